@@ -1,34 +1,188 @@
 package com.applied.arinc;
 
 import com.applied.arinc.messages.ArincMessage;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Provides a generic interface to an Arinc 429 device. Offers ability to read
  * messages, write messages, and generates events when new messages are available.
+ *
+ * Events come from a dedicated acquisition thread (see startAcquisition()) which
+ * reads raw words and hands each one, with its timestamp and channel, to every
+ * listener. Listeners are kept in a copy-on-write array: dispatch reads it
+ * without locking or allocating, and adding or removing a listener swaps in a
+ * new array without ever holding up delivery.
  * @author James Betker
  */
 public abstract class Arinc429 {
-    
+    private static final Arinc429Listener[] NO_LISTENERS = new Arinc429Listener[0];
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
     public abstract void init();
-    
+
     public abstract ArincMessage readMessage();
-    
+
+    /**
+     * Returned by readRawWord() when no word is available.
+     */
+    public static final long NO_WORD = -1L;
+
+    /**
+     * Reads the next raw 32-bit ARINC word without decoding it or allocating
+     * a message object. Decode with ArincWord or an ArincWordView.
+     * @return The word in the low 32 bits (zero-extended), or NO_WORD.
+     */
+    public abstract long readRawWord();
+
     public abstract void writeMessage(ArincMessage aMsg);
-    
+
+    /**
+     * @return When the word last returned by readRawWord() was received,
+     *         System.nanoTime() based. Sources which do not keep timestamps
+     *         return the current time, which is close enough when called right
+     *         after the read.
+     */
+    public long getLastTimestamp() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @return The channel the word last returned by readRawWord() came in on.
+     */
+    public int getLastChannel() {
+        return 0;
+    }
+
     public interface Arinc429Listener {
-        public void arinc429MessageAvailable();
+        /**
+         * Called on the acquisition thread for every word received. Must not
+         * block; hand the word off if there is real work to do.
+         * @param aRawWord The raw 32-bit ARINC word.
+         * @param aTimestampNanos When it was received, System.nanoTime() based.
+         * @param aChannel The receiver it came in on.
+         */
+        public void onWord(int aRawWord, long aTimestampNanos, int aChannel);
+    }
+
+    public synchronized void addListener(Arinc429Listener aListener) {
+        Arinc429Listener[] current = mListeners;
+        Arinc429Listener[] updated = new Arinc429Listener[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = aListener;
+        mListeners = updated;
+    }
+
+    public synchronized void removeListener(Arinc429Listener aListener) {
+        Arinc429Listener[] current = mListeners;
+        for(int i = 0; i < current.length; i++) {
+            if(current[i] == aListener) {
+                Arinc429Listener[] updated = new Arinc429Listener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                mListeners = updated.length == 0 ? NO_LISTENERS : updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts the acquisition thread, which reads words with readRawWord() and
+     * delivers them to the listeners until stopAcquisition() is called.
+     */
+    public synchronized void startAcquisition() {
+        if(mAcquisition != null) {
+            return;
+        }
+        mAcquiring = true;
+        acquisitionStarting();
+        mAcquisition = new Thread(this::acquisitionLoop, "Arinc429Acquisition");
+        mAcquisition.setDaemon(true);
+        mAcquisition.start();
+    }
+
+    /**
+     * Stops the acquisition thread and waits for it to finish.
+     */
+    public synchronized void stopAcquisition() {
+        Thread acquisition = mAcquisition;
+        if(acquisition == null) {
+            return;
+        }
+        mAcquiring = false;
+        acquisitionStopping();
+        LockSupport.unpark(acquisition);
+        try {
+            acquisition.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mAcquisition = null;
+    }
+
+    /**
+     * Called by startAcquisition() before the acquisition thread starts.
+     */
+    protected void acquisitionStarting() {
     }
-    
-    public void addListener(Arinc429Listener aListener) {
-        mListeners.add(aListener);
+
+    /**
+     * Called by stopAcquisition() on the stopping thread, before it waits for
+     * the acquisition thread. Sources which can block inside readRawWord(),
+     * such as a paced simulator, override this to cut the wait short.
+     */
+    protected void acquisitionStopping() {
+    }
+
+    /**
+     * Called by the acquisition thread when readRawWord() had nothing. The
+     * default parks briefly; devices that can signal data ready should wait
+     * for that instead.
+     */
+    protected void awaitWord() {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+    }
+
+    /**
+     * Hands a word to every listener registered at the time of the call.
+     * @param aRawWord
+     * @param aTimestampNanos
+     * @param aChannel
+     */
+    protected void dispatchWord(int aRawWord, long aTimestampNanos, int aChannel) {
+        Arinc429Listener[] listeners = mListeners;
+        for(int i = 0; i < listeners.length; i++) {
+            try {
+                listeners[i].onWord(aRawWord, aTimestampNanos, aChannel);
+            } catch(RuntimeException e) {
+                // One faulty listener must not starve the others.
+                e.printStackTrace();
+            }
+        }
     }
-    
-    protected void arinc429ISR_MessageAvailable() {
-        for(Arinc429Listener l : mListeners) {
-            l.arinc429MessageAvailable();
+
+    private void acquisitionLoop() {
+        while(mAcquiring) {
+            long word;
+            try {
+                word = readRawWord();
+            } catch(RuntimeException e) {
+                // An uncaught throw would end the thread while mAcquiring
+                // still reads true. Report it and back off, so a fault that
+                // persists does not spin the loop.
+                e.printStackTrace();
+                awaitWord();
+                continue;
+            }
+            if(word == NO_WORD) {
+                awaitWord();
+            } else {
+                dispatchWord((int)word, getLastTimestamp(), getLastChannel());
+            }
         }
     }
-    
-    private ArrayList<Arinc429Listener> mListeners;
+
+    private volatile Arinc429Listener[] mListeners = NO_LISTENERS;
+    private volatile boolean mAcquiring;
+    private Thread mAcquisition;
 }
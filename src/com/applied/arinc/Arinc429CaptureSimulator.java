@@ -0,0 +1,147 @@
+package com.applied.arinc;
+
+import com.applied.arinc.capture.CaptureFile;
+import com.applied.arinc.messages.ArincMessage;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Replays a binary capture recorded by ArincRecorder. Can start from any point
+ * in time and can be restricted to a single label, both served from the
+ * capture's index rather than by scanning.
+ * @author James
+ */
+public class Arinc429CaptureSimulator extends Arinc429 {
+    CaptureFile mCapture;
+    long mNext;
+    CaptureFile.LabelCursor mLabelCursor;
+    long mLastTimestamp;
+    int mLastChannel;
+    volatile ReplayPacer mPacer;
+    
+    public Arinc429CaptureSimulator(String aFile) throws IOException {
+        mCapture = CaptureFile.open(Paths.get(aFile));
+    }
+
+    @Override
+    public void init() {
+    }
+    
+    /**
+     * Positions replay at the first word recorded at or after aTimestampNanos.
+     * @param aTimestampNanos 
+     */
+    public void seek(long aTimestampNanos) {
+        mNext = mCapture.seek(aTimestampNanos);
+        if(mPacer != null) {
+            mPacer.reset();
+        }
+        if(mLabelCursor != null) {
+            mLabelCursor = mCapture.labelCursor(mLabel, mNext);
+        }
+    }
+    
+    /**
+     * Restricts replay to one label from the current position on.
+     * @param aLabel The label, or -1 to replay every word again.
+     */
+    public void filterLabel(int aLabel) {
+        mLabel = aLabel;
+        mLabelCursor = aLabel < 0 ? null : mCapture.labelCursor(aLabel, mNext);
+    }
+    
+    /**
+     * @return The recorded timestamp of the word last returned.
+     */
+    @Override
+    public long getLastTimestamp() {
+        return mLastTimestamp;
+    }
+    
+    /**
+     * @return The recorded channel of the word last returned.
+     */
+    @Override
+    public int getLastChannel() {
+        return mLastChannel;
+    }
+    
+    /**
+     * Paces replay, e.g. ReplayPacer.recorded(10.0) to play back at ten times
+     * the recorded speed.
+     * @param aPacer The pacer, or null to return words as fast as they are read.
+     */
+    public void setReplayPacer(ReplayPacer aPacer) {
+        mPacer = aPacer;
+    }
+    
+    public CaptureFile getCapture() {
+        return mCapture;
+    }
+
+    @Override
+    public ArincMessage readMessage() {
+        long word = readRawWord();
+        if(word == NO_WORD) {
+            return null;
+        }
+        return ArincMessage.processArincFrame((int)word, mLastTimestamp);
+    }
+
+    @Override
+    public long readRawWord() {
+        long record;
+        if(mLabelCursor != null) {
+            record = mLabelCursor.next();
+        } else {
+            record = mNext < mCapture.getRecordCount() ? mNext : -1;
+        }
+        if(record < 0) {
+            return NO_WORD;
+        }
+        mNext = record + 1;
+        mLastTimestamp = mCapture.getTimestamp(record);
+        mLastChannel = mCapture.getChannel(record);
+        if(mPacer != null) {
+            mPacer.pace(mLastTimestamp);
+        }
+        return mCapture.getWord(record) & 0xffffffffL;
+    }
+
+    /**
+     * Restarts the pacer's schedule, so replay resumes without a burst of
+     * overdue words.
+     */
+    @Override
+    protected void acquisitionStarting() {
+        ReplayPacer pacer = mPacer;
+        if(pacer != null) {
+            pacer.reset();
+        }
+    }
+
+    /**
+     * Cancels any pacer wait, which in RECORDED mode can be as long as the
+     * longest gap in the recording.
+     */
+    @Override
+    protected void acquisitionStopping() {
+        ReplayPacer pacer = mPacer;
+        if(pacer != null) {
+            pacer.cancel();
+        }
+    }
+
+    /**
+     * Not supported: a capture is a fixed recording, so there is no bus to
+     * transmit on. Use Arinc429LoopbackSimulator to exercise a transmit path.
+     * @param aMsg
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void writeMessage(ArincMessage aMsg) {
+        throw new UnsupportedOperationException("Capture replay is read-only; words cannot be written back into a recorded capture.");
+    }
+    
+    int mLabel = -1;
+}
@@ -1,41 +1,124 @@
 package com.applied.arinc;
 
+import com.applied.arinc.capture.HexCaptureReader;
 import com.applied.arinc.messages.ArincMessage;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
+ * Replays a text capture with one hex word per line.
  *
+ * In memory-mapped mode the file is parsed straight from the mapping by a
+ * HexCaptureReader, with no allocation per line; malformed lines are skipped
+ * and counted (see getMalformedCount()) instead of raising exceptions.
+ *
+ * Words are returned as fast as they are asked for unless a ReplayPacer is set.
  * @author James
  */
 public class Arinc429FileSimulator extends Arinc429 {
     BufferedReader mReader;
-    
+    HexCaptureReader mHexReader;
+    volatile ReplayPacer mPacer;
+
     public Arinc429FileSimulator(String aFile) throws IOException{
-        mReader = new BufferedReader(new FileReader(aFile));
+        this(aFile, false);
+    }
+
+    /**
+     * @param aFile
+     * @param aMemoryMapped True to map the file and parse it without allocating.
+     * @throws IOException
+     */
+    public Arinc429FileSimulator(String aFile, boolean aMemoryMapped) throws IOException{
+        if(aMemoryMapped) {
+            mHexReader = new HexCaptureReader(Paths.get(aFile));
+        } else {
+            mReader = new BufferedReader(new FileReader(aFile));
+        }
     }
 
     @Override
     public void init() {
     }
 
+    /**
+     * @return The number of lines skipped as malformed. Only counted in
+     *         memory-mapped mode.
+     */
+    public long getMalformedCount() {
+        return mHexReader != null ? mHexReader.getMalformedCount() : 0;
+    }
+
+    /**
+     * Paces replay. Text captures carry no timestamps, so only MAX_SPEED and
+     * BUS_RATE pacers apply.
+     * @param aPacer The pacer, or null to return words as fast as they are read.
+     */
+    public void setReplayPacer(ReplayPacer aPacer) {
+        if(aPacer != null && aPacer.getMode() == ReplayPacer.Mode.RECORDED) {
+            throw new IllegalArgumentException("Text captures have no recorded timestamps.");
+        }
+        mPacer = aPacer;
+    }
+
     @Override
     public ArincMessage readMessage() {
+        long word = readRawWord();
+        return word == NO_WORD ? null : ArincMessage.processArincFrame((int)word);
+    }
+
+    @Override
+    public long readRawWord() {
+        long word = NO_WORD;
         try {
-            String line = mReader.readLine();
-            if(line != null) {
-                return ArincMessage.processArincFrame((int)(Long.parseLong(line, 16)));
+            if(mHexReader != null) {
+                word = mHexReader.next();
+                if(word == HexCaptureReader.END) {
+                    word = NO_WORD;
+                }
+            } else {
+                String line = mReader.readLine();
+                if(line != null) {
+                    word = Long.parseLong(line, 16) & 0xffffffffL;
+                }
             }
         }catch(Exception e) {
             e.printStackTrace();
         }
-        return null;
+        if(word != NO_WORD && mPacer != null) {
+            mPacer.pace(0);
+        }
+        return word;
+    }
+
+    /**
+     * Restarts the bus rate schedule from the next word.
+     */
+    @Override
+    protected void acquisitionStarting() {
+        ReplayPacer pacer = mPacer;
+        if(pacer != null) {
+            pacer.reset();
+        }
+    }
+
+    /**
+     * Wakes a paced read so stopAcquisition() need not wait out a word time,
+     * which at a slowed-down replay can be long.
+     */
+    @Override
+    protected void acquisitionStopping() {
+        ReplayPacer pacer = mPacer;
+        if(pacer != null) {
+            pacer.cancel();
+        }
     }
 
     @Override
     public void writeMessage(ArincMessage aMsg) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
-    
+
 }
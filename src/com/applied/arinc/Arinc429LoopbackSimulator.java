@@ -0,0 +1,135 @@
+package com.applied.arinc;
+
+import com.applied.arinc.messages.ArincMessage;
+import com.applied.arinc.messages.ArincParity;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loops transmitted words back to the receive side, like the DEI1016 self-test
+ * mode, so the transmit path of an application can be exercised without
+ * hardware.
+ *
+ * Written words go into a bounded lock-free ring. Each one becomes readable
+ * once it would have finished crossing the bus: words are serialized at the
+ * configured bit rate, 32 bit times plus the 4 bit gap each, so a burst of
+ * writes drains at bus speed rather than all at once. A rate of 0 delivers
+ * words immediately. When the ring is full further writes are dropped and
+ * counted.
+ *
+ * One thread may write and one thread may read at a time. Neither side blocks
+ * or allocates.
+ * @author James
+ */
+public class Arinc429LoopbackSimulator extends Arinc429 {
+    /**
+     * @param aCapacity Ring size in words, rounded up to a power of two.
+     * @param aBitsPerSecond Simulated bus rate, usually
+     *                       ReplayPacer.HIGH_SPEED_BPS or LOW_SPEED_BPS, or 0
+     *                       for no delay.
+     */
+    public Arinc429LoopbackSimulator(int aCapacity, int aBitsPerSecond) {
+        int capacity = Integer.highestOneBit(Math.max(aCapacity, 2) - 1) << 1;
+        mMask = capacity - 1;
+        mWords = new int[capacity];
+        mDeliverAt = new long[capacity];
+        mWordNanos = aBitsPerSecond > 0
+                ? TimeUnit.SECONDS.toNanos(ReplayPacer.WORD_BITS + ReplayPacer.GAP_BITS) / aBitsPerSecond
+                : 0;
+    }
+
+    @Override
+    public void init() {
+    }
+
+    /**
+     * Queues a raw word for loopback, applying odd parity.
+     * @param aWord
+     * @return False if the ring was full and the word was dropped.
+     */
+    public boolean writeRawWord(int aWord) {
+        long head = mProducerHead;
+        if(head - mTail.get() > mMask) {
+            mDropped.lazySet(mDropped.get() + 1);
+            return false;
+        }
+        long now = System.nanoTime();
+        // The transmitter starts this word when the bus is free.
+        long deliverAt = Math.max(now, mBusFreeAt) + mWordNanos;
+        mBusFreeAt = deliverAt;
+        int slot = (int)head & mMask;
+        mWords[slot] = ArincParity.withParity(aWord);
+        mDeliverAt[slot] = deliverAt;
+        mProducerHead = head + 1;
+        mHead.lazySet(head + 1);
+        return true;
+    }
+
+    @Override
+    public void writeMessage(ArincMessage aMsg) {
+        writeRawWord(aMsg.getWord());
+    }
+
+    /**
+     * @return True if a word has finished crossing the bus and can be read.
+     */
+    public boolean isDataReady() {
+        long tail = mConsumerTail;
+        return mHead.get() != tail && mDeliverAt[(int)tail & mMask] <= System.nanoTime();
+    }
+
+    @Override
+    public ArincMessage readMessage() {
+        long word = readRawWord();
+        return word == NO_WORD ? null : ArincMessage.processArincFrame((int)word, mLastTimestamp);
+    }
+
+    /**
+     * @return The next delivered word, or NO_WORD if none has arrived yet.
+     */
+    @Override
+    public long readRawWord() {
+        long tail = mConsumerTail;
+        if(mHead.get() == tail) {
+            return NO_WORD;
+        }
+        int slot = (int)tail & mMask;
+        long deliverAt = mDeliverAt[slot];
+        if(deliverAt > System.nanoTime()) {
+            return NO_WORD;
+        }
+        int word = mWords[slot];
+        mLastTimestamp = deliverAt;
+        mConsumerTail = tail + 1;
+        mTail.lazySet(tail + 1);
+        return word & 0xffffffffL;
+    }
+
+    /**
+     * @return When the word last read arrived, System.nanoTime() based.
+     */
+    @Override
+    public long getLastTimestamp() {
+        return mLastTimestamp;
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    private final int mMask;
+    private final int[] mWords;
+    private final long[] mDeliverAt;
+    private final long mWordNanos;
+
+    // Writer side. mProducerHead is the writer's private copy of mHead.
+    private long mProducerHead;
+    private long mBusFreeAt;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    // Reader side. mConsumerTail is the reader's private copy of mTail.
+    private long mConsumerTail;
+    private long mLastTimestamp;
+    private final AtomicLong mTail = new AtomicLong();
+}
@@ -0,0 +1,191 @@
+package com.applied.arinc;
+
+import com.applied.arinc.messages.ArincBnr;
+import com.applied.arinc.messages.ArincMessage;
+import com.applied.arinc.messages.ArincParity;
+import com.applied.arinc.messages.ArincWord;
+import java.util.Arrays;
+
+/**
+ * Generates synthetic ARINC traffic from a TrafficProfile. Each profile entry
+ * repeats at its own rate on a simulated clock that starts at 0; the generator
+ * always returns the entry that is due next, so words come out in timestamp
+ * order just as they would interleave on a real bus.
+ *
+ * Output is deterministic for a given profile and seed: start phases and noise
+ * come from a private xorshift generator. readRawWord() does not allocate and
+ * runs at millions of words per second, so it can drive throughput benchmarks
+ * without becoming the bottleneck. With no pacer set the simulated clock runs
+ * as fast as words are read; set ReplayPacer.recorded() to release them in real
+ * (or scaled) time.
+ * @author James
+ */
+public class Arinc429TrafficGenerator extends Arinc429 {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    public Arinc429TrafficGenerator(TrafficProfile aProfile, long aSeed) {
+        int n = aProfile.size();
+        if(n == 0) {
+            throw new IllegalArgumentException("Traffic profile is empty.");
+        }
+        mCount = n;
+        mKind = Arrays.copyOf(aProfile.mKind, n);
+        mKey = Arrays.copyOf(aProfile.mKey, n);
+        mData = Arrays.copyOf(aProfile.mData, n);
+        mPeriodNanos = Arrays.copyOf(aProfile.mPeriodNanos, n);
+        mA = Arrays.copyOf(aProfile.mA, n);
+        mB = Arrays.copyOf(aProfile.mB, n);
+        mC = Arrays.copyOf(aProfile.mC, n);
+        mNoise = Arrays.copyOf(aProfile.mNoise, n);
+        mDue = new long[n];
+        // xorshift must not start at zero.
+        mRandom = aSeed == 0 ? 0x9e3779b97f4a7c15L : aSeed;
+        for(int i = 0; i < n; i++) {
+            // Spread the first transmissions over each entry's period so
+            // entries with the same rate don't always collide.
+            mDue[i] = (nextRandom() >>> 1) % mPeriodNanos[i];
+        }
+    }
+
+    @Override
+    public void init() {
+    }
+
+    /**
+     * @param aPacer The pacer, or null to return words as fast as they are read.
+     */
+    public void setReplayPacer(ReplayPacer aPacer) {
+        mPacer = aPacer;
+    }
+
+    /**
+     * @return The simulated timestamp of the word last returned.
+     */
+    @Override
+    public long getLastTimestamp() {
+        return mLastTimestamp;
+    }
+
+    public long getWordCount() {
+        return mWords;
+    }
+
+    @Override
+    public ArincMessage readMessage() {
+        int word = (int)readRawWord();
+        return ArincMessage.processArincFrame(word, mLastTimestamp);
+    }
+
+    /**
+     * @return The next word. The generator never runs dry.
+     */
+    @Override
+    public long readRawWord() {
+        long[] due = mDue;
+        int next = 0;
+        long nextDue = due[0];
+        for(int i = 1; i < mCount; i++) {
+            if(due[i] < nextDue) {
+                nextDue = due[i];
+                next = i;
+            }
+        }
+        due[next] = nextDue + mPeriodNanos[next];
+        mLastTimestamp = nextDue;
+        mWords++;
+
+        int data;
+        if(mKind[next] == TrafficProfile.RAW) {
+            data = mData[next];
+        } else {
+            data = ArincBnr.encodeData(mKey[next], valueAt(next, nextDue));
+        }
+        int word = ArincParity.withParity(mKey[next] | (data << ArincWord.DATA_SHIFT));
+        if(mPacer != null) {
+            mPacer.pace(nextDue);
+        }
+        return word & 0xffffffffL;
+    }
+
+    /**
+     * Restarts pacing, so words generated while stopped are not released in
+     * a burst.
+     */
+    @Override
+    protected void acquisitionStarting() {
+        ReplayPacer pacer = mPacer;
+        if(pacer != null) {
+            pacer.reset();
+        }
+    }
+
+    /**
+     * Cancels a pending pacer wait; a profile of slow entries can leave
+     * seconds between words.
+     */
+    @Override
+    protected void acquisitionStopping() {
+        ReplayPacer pacer = mPacer;
+        if(pacer != null) {
+            pacer.cancel();
+        }
+    }
+
+    /**
+     * Not supported: the generator is a receive-only source driven by its
+     * profile. Use Arinc429LoopbackSimulator to exercise a transmit path.
+     * @param aMsg
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void writeMessage(ArincMessage aMsg) {
+        throw new UnsupportedOperationException("The traffic generator only produces words; it has no transmit side.");
+    }
+
+    private double valueAt(int aEntry, long aNanos) {
+        double seconds = aNanos / NANOS_PER_SECOND;
+        double value;
+        switch(mKind[aEntry]) {
+            case TrafficProfile.RAMP:
+                value = mA[aEntry] + mB[aEntry] * seconds;
+                break;
+            case TrafficProfile.SINE:
+                value = mA[aEntry] + mB[aEntry] * Math.sin(mC[aEntry] * seconds);
+                break;
+            default:
+                value = mA[aEntry];
+                break;
+        }
+        double noise = mNoise[aEntry];
+        if(noise != 0) {
+            // Top 53 bits to a double in [0, 1), then to [-noise, noise).
+            value += ((nextRandom() >>> 11) * 0x1.0p-53 * 2 - 1) * noise;
+        }
+        return value;
+    }
+
+    private long nextRandom() {
+        long x = mRandom;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        mRandom = x;
+        return x;
+    }
+
+    private final int mCount;
+    private final int[] mKind;
+    private final int[] mKey;
+    private final int[] mData;
+    private final long[] mPeriodNanos;
+    private final double[] mA;
+    private final double[] mB;
+    private final double[] mC;
+    private final double[] mNoise;
+    private final long[] mDue;
+
+    private long mRandom;
+    private long mLastTimestamp;
+    private long mWords;
+    private volatile ReplayPacer mPacer;
+}
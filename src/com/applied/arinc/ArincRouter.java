@@ -0,0 +1,118 @@
+package com.applied.arinc;
+
+import com.applied.arinc.messages.ArincWord;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Routes raw words to subscribers by (label, SDI). The low 10 bits of a raw word
+ * are exactly the label and SDI, so routing is a single load from a flat
+ * 1024-entry table with no hashing and no allocation.
+ *
+ * Each slot holds an immutable subscriber array which is replaced wholesale on
+ * subscribe/unsubscribe, so dispatch never locks and never sees a half-updated
+ * list.
+ * @author James
+ */
+public class ArincRouter {
+    /**
+     * Pass as the SDI to subscribe to a label from every source.
+     */
+    public static final int ANY_SDI = -1;
+
+    public static final int ROUTE_COUNT = 1024;
+
+    private static final int ROUTE_MASK = ROUTE_COUNT - 1;
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+
+    public interface Subscriber {
+        /**
+         * Called on the dispatching thread for every word routed here.
+         * @param aWord The raw 32-bit ARINC word.
+         * @param aTimestampNanos When the word was received, System.nanoTime() based.
+         */
+        public void onWord(int aWord, long aTimestampNanos);
+    }
+
+    public ArincRouter() {
+        for(int i = 0; i < ROUTE_COUNT; i++) {
+            mRoutes.set(i, NO_SUBSCRIBERS);
+        }
+    }
+
+    /**
+     * Subscribes to a label from one source, or from all of them with ANY_SDI.
+     * @param aLabel
+     * @param aSdi 0-3, or ANY_SDI.
+     * @param aSubscriber
+     */
+    public synchronized void subscribe(int aLabel, int aSdi, Subscriber aSubscriber) {
+        for(int sdi = firstSdi(aSdi); sdi <= lastSdi(aSdi); sdi++) {
+            int route = routeOf(aLabel, sdi);
+            Subscriber[] current = mRoutes.get(route);
+            Subscriber[] updated = new Subscriber[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = aSubscriber;
+            mRoutes.set(route, updated);
+        }
+    }
+
+    /**
+     * Removes a subscription made with the same label and SDI.
+     * @param aLabel
+     * @param aSdi 0-3, or ANY_SDI.
+     * @param aSubscriber
+     */
+    public synchronized void unsubscribe(int aLabel, int aSdi, Subscriber aSubscriber) {
+        for(int sdi = firstSdi(aSdi); sdi <= lastSdi(aSdi); sdi++) {
+            int route = routeOf(aLabel, sdi);
+            Subscriber[] current = mRoutes.get(route);
+            for(int i = 0; i < current.length; i++) {
+                if(current[i] == aSubscriber) {
+                    Subscriber[] updated = current.length == 1 ? NO_SUBSCRIBERS : new Subscriber[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    mRoutes.set(route, updated);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers aWord to every subscriber of its (label, SDI).
+     * @param aWord
+     * @param aTimestampNanos
+     * @return False if nobody was subscribed.
+     */
+    public boolean dispatch(int aWord, long aTimestampNanos) {
+        Subscriber[] subscribers = mRoutes.get(aWord & ROUTE_MASK);
+        for(int i = 0; i < subscribers.length; i++) {
+            subscribers[i].onWord(aWord, aTimestampNanos);
+        }
+        return subscribers.length != 0;
+    }
+
+    public boolean hasSubscribers(int aLabel, int aSdi) {
+        return mRoutes.get(routeOf(aLabel, aSdi)).length != 0;
+    }
+
+    /**
+     * @param aLabel
+     * @param aSdi
+     * @return The table index for (aLabel, aSdi), equal to the low 10 bits of a
+     *         word carrying them.
+     */
+    public static int routeOf(int aLabel, int aSdi) {
+        return ((aSdi & ArincWord.SDI_MASK) << ArincWord.SDI_SHIFT) | (aLabel & ArincWord.LABEL_MASK);
+    }
+
+    private static int firstSdi(int aSdi) {
+        return aSdi == ANY_SDI ? 0 : aSdi & ArincWord.SDI_MASK;
+    }
+
+    private static int lastSdi(int aSdi) {
+        return aSdi == ANY_SDI ? ArincWord.SDI_MASK : aSdi & ArincWord.SDI_MASK;
+    }
+
+    private final AtomicReferenceArray<Subscriber[]> mRoutes = new AtomicReferenceArray<>(ROUTE_COUNT);
+}
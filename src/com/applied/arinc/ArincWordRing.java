@@ -0,0 +1,399 @@
+package com.applied.arinc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands received words from the acquisition thread to a processing thread, so
+ * that decoding, logging and other consumer work never delay the next FIFO
+ * drain. Register the ring as a listener on an Arinc429 device and call take()
+ * or drain() from the processing thread:
+ *
+ *     ArincWordRing ring = new ArincWordRing(4096, OverflowPolicy.DROP_OLDEST, WaitStrategy.BLOCKING);
+ *     driver.addListener(ring);
+ *     driver.startAcquisition();
+ *     ...
+ *     while(running) {
+ *         ring.take(handler, 256);
+ *     }
+ *
+ * Each entry is two primitive longs in one preallocated array: the timestamp,
+ * then the raw word with the channel in the upper half. An entry's sequence
+ * number is its position in the stream; getDeliveredCount() and
+ * getDroppedCount() account for every word offered. Nothing is allocated after
+ * construction.
+ *
+ * One thread may offer and one thread may take at a time. The two cursors are
+ * padded onto cache lines of their own, as is each side's private state: the
+ * producer's own head and the tail it last saw, and the head the consumer last
+ * saw. Each side only reads the other's cursor when its cached copy says the
+ * ring is full or empty, so in steady state neither side writes a line the
+ * other one reads except to publish.
+ * @author James
+ */
+public class ArincWordRing implements Arinc429.Arinc429Listener {
+    /**
+     * What offer() does when the ring is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the word being offered, keeping the backlog intact. Right
+         * for recording, where a gap is better than reordering.
+         */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest queued word to make room. Right for display,
+         * where only recent values matter.
+         */
+        DROP_OLDEST,
+        /**
+         * Wait for the consumer to make room. Only safe when the producer can
+         * afford to stall, since the device FIFO keeps filling meanwhile.
+         */
+        BLOCK
+    }
+
+    /**
+     * How a side waits for the other: the consumer for words, and under
+     * OverflowPolicy.BLOCK the producer for room.
+     */
+    public enum WaitStrategy {
+        /**
+         * Spin continuously. Lowest latency; needs a core per waiting thread.
+         */
+        BUSY_SPIN,
+        /**
+         * Spin briefly, then yield the processor between checks.
+         */
+        YIELDING,
+        /**
+         * Spin, yield, then park for short fixed periods. Little CPU when idle
+         * at the cost of up to one period of latency.
+         */
+        SLEEPING,
+        /**
+         * Park until the other side signals. No CPU when idle, but publishing
+         * costs a full fence and, when someone waits, an unpark.
+         */
+        BLOCKING
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // BLOCKING waiters are always signalled; the timeout only bounds how long
+    // an interrupt or a changed strategy can go unnoticed.
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int BATCH_WORDS = 256;
+    private static final long WORD_MASK = 0xffffffffL;
+
+    /**
+     * @param aCapacity Ring size in words, rounded up to a power of two.
+     * @param aPolicy What to do with words offered while the ring is full.
+     * @param aStrategy How waiting threads wait.
+     */
+    public ArincWordRing(int aCapacity, OverflowPolicy aPolicy, WaitStrategy aStrategy) {
+        int capacity = Integer.highestOneBit(Math.max(aCapacity, 2) - 1) << 1;
+        mMask = capacity - 1;
+        mEntries = new long[capacity * 2];
+        mBatch = new long[Math.min(capacity, BATCH_WORDS) * 2];
+        mPolicy = aPolicy;
+        mStrategy = aStrategy;
+    }
+
+    /**
+     * Queues a word. Must only be called from one thread at a time.
+     * @param aWord
+     * @param aTimestampNanos
+     * @param aChannel
+     * @return False if this word was dropped, because the ring was full under
+     *         DROP_NEWEST or the producer was interrupted while blocked.
+     *         Under DROP_OLDEST the word is always queued.
+     */
+    public boolean offer(int aWord, long aTimestampNanos, int aChannel) {
+        Side producer = mProducer;
+        long head = producer.mHead;
+        if(head - producer.mTail > mMask) {
+            producer.mTail = mTail.get();
+            if(head - producer.mTail > mMask && !makeRoom(head)) {
+                mDropped.lazySet(mDropped.get() + 1);
+                return false;
+            }
+        }
+        int entry = ((int)head & mMask) << 1;
+        mEntries[entry] = aTimestampNanos;
+        mEntries[entry + 1] = (aWord & WORD_MASK) | ((long)aChannel << 32);
+        producer.mHead = head + 1;
+        if(mStrategy == WaitStrategy.BLOCKING) {
+            // A full fence, so either the consumer sees the word or we see it
+            // waiting.
+            mHead.set(head + 1);
+            wake(mConsumer.mWaiter);
+        } else {
+            mHead.lazySet(head + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Lets the ring be registered directly as a device listener.
+     */
+    @Override
+    public void onWord(int aRawWord, long aTimestampNanos, int aChannel) {
+        offer(aRawWord, aTimestampNanos, aChannel);
+    }
+
+    /**
+     * Hands queued words to aHandler without waiting. Must only be called from
+     * one thread at a time. The words are released before aHandler runs, so
+     * the producer can reuse their slots while they are processed.
+     * @param aHandler Called for each word, in order.
+     * @param aMaxWords The most words to hand over; at most 256 are taken per
+     *                  call.
+     * @return The number of words handed over.
+     */
+    public int drain(Arinc429.Arinc429Listener aHandler, int aMaxWords) {
+        long[] entries = mEntries;
+        long[] batch = mBatch;
+        Side consumer = mConsumer;
+        int limit = Math.min(aMaxWords, batch.length >> 1);
+        if(limit <= 0) {
+            return 0;
+        }
+        int count;
+        while(true) {
+            long tail = mTail.get();
+            long available = consumer.mHead - tail;
+            if(available <= 0) {
+                consumer.mHead = mHead.get();
+                available = consumer.mHead - tail;
+                if(available <= 0) {
+                    return 0;
+                }
+            }
+            count = (int)Math.min(available, limit);
+            for(int i = 0; i < count; i++) {
+                int entry = ((int)(tail + i) & mMask) << 1;
+                batch[i << 1] = entries[entry];
+                batch[(i << 1) + 1] = entries[entry + 1];
+            }
+            if(mTail.compareAndSet(tail, tail + count)) {
+                break;
+            }
+            // Under DROP_OLDEST the producer moved the tail past entries we
+            // copied and may be overwriting them. Start over from the new tail
+            // with a smaller batch, so a producer that overflows the ring
+            // faster than we can copy a full batch cannot starve us.
+            limit = Math.max(1, count >> 1);
+        }
+        if(mPolicy == OverflowPolicy.BLOCK && mStrategy == WaitStrategy.BLOCKING) {
+            wake(mProducer.mWaiter);
+        }
+        for(int i = 0; i < count; i++) {
+            long packed = batch[(i << 1) + 1];
+            aHandler.onWord((int)packed, batch[i << 1], (int)(packed >>> 32));
+        }
+        return count;
+    }
+
+    /**
+     * Like drain(), but waits according to the wait strategy until there is
+     * at least one word.
+     * @param aHandler
+     * @param aMaxWords
+     * @return The number of words handed over, or 0 if the calling thread
+     *         was interrupted while waiting.
+     */
+    public int take(Arinc429.Arinc429Listener aHandler, int aMaxWords) {
+        Thread current = Thread.currentThread();
+        for(int i = 0; ; i++) {
+            int count = drain(aHandler, aMaxWords);
+            if(count > 0 || aMaxWords <= 0 || current.isInterrupted()) {
+                return count;
+            }
+            if(mStrategy == WaitStrategy.BLOCKING) {
+                // Publish the waiter before the final check; see offer().
+                mConsumer.mWaiter = current;
+                if(mHead.get() == mTail.get()) {
+                    LockSupport.parkNanos(this, BLOCK_TIMEOUT_NANOS);
+                }
+                mConsumer.mWaiter = null;
+            } else {
+                idle(i);
+            }
+        }
+    }
+
+    /**
+     * @return The number of words queued. Approximate while either side is
+     *         running.
+     */
+    public int size() {
+        return (int)Math.max(0, mHead.get() - mTail.get());
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return mPolicy;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return mStrategy;
+    }
+
+    /**
+     * @return Words released to the consumer so far.
+     */
+    public long getDeliveredCount() {
+        return mTail.get() - mOldestDropped.get();
+    }
+
+    /**
+     * @return Words lost to overflow so far, whichever end they were dropped
+     *         from.
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * Called by the producer on a full ring.
+     * @return True once there is room for the word at aHead.
+     */
+    private boolean makeRoom(long aHead) {
+        Side producer = mProducer;
+        switch(mPolicy) {
+            case DROP_OLDEST:
+                while(true) {
+                    long tail = mTail.get();
+                    if(aHead - tail <= mMask) {
+                        producer.mTail = tail;
+                        return true;
+                    }
+                    if(mTail.compareAndSet(tail, tail + 1)) {
+                        mDropped.lazySet(mDropped.get() + 1);
+                        mOldestDropped.lazySet(mOldestDropped.get() + 1);
+                        producer.mTail = tail + 1;
+                        return true;
+                    }
+                }
+            case BLOCK:
+                Thread current = Thread.currentThread();
+                for(int i = 0; !current.isInterrupted(); i++) {
+                    if(mStrategy == WaitStrategy.BLOCKING) {
+                        producer.mWaiter = current;
+                        if(aHead - mTail.get() > mMask) {
+                            LockSupport.parkNanos(this, BLOCK_TIMEOUT_NANOS);
+                        }
+                        producer.mWaiter = null;
+                    } else {
+                        idle(i);
+                    }
+                    producer.mTail = mTail.get();
+                    if(aHead - producer.mTail <= mMask) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void idle(int aIteration) {
+        if(mStrategy == WaitStrategy.BUSY_SPIN || aIteration < SPIN_TRIES) {
+            return;
+        }
+        if(mStrategy == WaitStrategy.YIELDING || aIteration < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+            return;
+        }
+        LockSupport.parkNanos(this, SLEEP_NANOS);
+    }
+
+    private static void wake(Thread aWaiter) {
+        if(aWaiter != null) {
+            LockSupport.unpark(aWaiter);
+        }
+    }
+
+    /**
+     * Pads a cursor on both sides so it never shares a cache line with
+     * anything else. The JVM lays out superclass fields first, which is what
+     * keeps the padding in place.
+     */
+    static class CursorLeftPad {
+        long mP1, mP2, mP3, mP4, mP5, mP6, mP7;
+    }
+
+    static class CursorValue extends CursorLeftPad {
+        volatile long mValue;
+    }
+
+    static final class Cursor extends CursorValue {
+        private static final AtomicLongFieldUpdater<CursorValue> VALUE =
+                AtomicLongFieldUpdater.newUpdater(CursorValue.class, "mValue");
+
+        long mP9, mP10, mP11, mP12, mP13, mP14, mP15;
+
+        long get() {
+            return mValue;
+        }
+
+        void set(long aValue) {
+            mValue = aValue;
+        }
+
+        void lazySet(long aValue) {
+            VALUE.lazySet(this, aValue);
+        }
+
+        boolean compareAndSet(long aExpect, long aUpdate) {
+            return VALUE.compareAndSet(this, aExpect, aUpdate);
+        }
+    }
+
+    /**
+     * One side's private state, padded like a cursor so that the other side's
+     * reads of the ring never share a line with it.
+     */
+    static class SideLeftPad {
+        long mP1, mP2, mP3, mP4, mP5, mP6, mP7;
+    }
+
+    static class SideFields extends SideLeftPad {
+        // Producer: its own head. Consumer: the head it last saw.
+        long mHead;
+        // Producer: the tail it last saw. Unused by the consumer.
+        long mTail;
+        // Set while this side is parked under WaitStrategy.BLOCKING.
+        volatile Thread mWaiter;
+    }
+
+    static final class Side extends SideFields {
+        long mP9, mP10, mP11, mP12, mP13, mP14, mP15;
+    }
+
+    // Read-only after construction, so shared freely by both sides.
+    private final int mMask;
+    private final long[] mEntries;
+    private final OverflowPolicy mPolicy;
+    private final WaitStrategy mStrategy;
+
+    // Producer side.
+    private final Side mProducer = new Side();
+    private final Cursor mHead = new Cursor();
+    private final AtomicLong mDropped = new AtomicLong();
+    // Dropped words the producer moved the tail past, which mTail counts.
+    private final AtomicLong mOldestDropped = new AtomicLong();
+
+    // Consumer side. mBatch holds words between releasing and handing them over.
+    private final Side mConsumer = new Side();
+    private final long[] mBatch;
+    private final Cursor mTail = new Cursor();
+}
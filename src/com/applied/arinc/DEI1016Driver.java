@@ -1,6 +1,10 @@
 package com.applied.arinc;
 
+import com.applied.arinc.capture.ArincRecorder;
 import com.applied.arinc.messages.ArincMessage;
+import com.applied.arinc.messages.ArincParity;
+import com.applied.arinc.messages.ArincParityChecker;
+import com.applied.arinc.messages.ArincWord;
 import com.pi4j.gpio.extension.mcp.MCP23017GpioProvider;
 import com.pi4j.gpio.extension.mcp.MCP23017Pin;
 import com.pi4j.io.gpio.GpioFactory;
@@ -12,6 +16,8 @@ import com.pi4j.io.gpio.PinState;
 import com.pi4j.io.gpio.RaspiPin;
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.wiringpi.Gpio;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Driver class that interfaces with the DEI1016 ARINC Transceiver chip to implement
@@ -21,6 +27,32 @@ import com.pi4j.wiringpi.Gpio;
 public class DEI1016Driver extends Arinc429 {
     MCP23017Driver mcpDriver;
     final int MCP_BUS_NO = 0x20;
+    ArincParityChecker mParityChecker;
+    volatile ArincRecorder mRecorder;
+    long mLastTimestamp;
+    volatile DataReadyLine mDataReady1;
+    volatile Thread mReceiveWaiter;
+    
+    /**
+     * Channel number recorded for words received on RX1.
+     */
+    public static final int RX1_CHANNEL = 1;
+    
+    /**
+     * Longest the acquisition thread sleeps on DR1 without an edge, in case
+     * one is missed. The RX1 FIFO holds 8 words, about 2.9ms of a busy high
+     * speed bus.
+     */
+    private static final long DATA_READY_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    
+    /**
+     * Depth of the DEI1016 transmit FIFO, in words.
+     */
+    public static final int TX_FIFO_WORDS = 8;
+    
+    private static final long TX_READY_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // A word takes 360us on a high speed bus.
+    private static final long TX_READY_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
     
     @Override
     public void init() {
@@ -33,6 +65,132 @@ public class DEI1016Driver extends Arinc429 {
 
     @Override
     public ArincMessage readMessage() {
+        long timestamp = System.nanoTime();
+        int dword = receiveWord(timestamp);
+        if(mParityChecker != null && !mParityChecker.accept(dword)) {
+            return null;
+        }
+        return ArincMessage.processArincFrame(dword, timestamp);
+    }
+    
+    /**
+     * Reads the next word from RX1 if the chip has one. Words that fail
+     * parity are dropped and the FIFO read on, so a bad word does not hold
+     * off the ones queued behind it.
+     * @return The word, or NO_WORD once RX1 is empty.
+     */
+    @Override
+    public long readRawWord() {
+        while(isDataReadyRx1()) {
+            int dword = receiveWord(System.nanoTime());
+            if(mParityChecker == null || mParityChecker.accept(dword)) {
+                return dword & 0xffffffffL;
+            }
+        }
+        return NO_WORD;
+    }
+    
+    /**
+     * Installs a flight recorder which is handed every received word, parity
+     * failures included, before it is decoded.
+     * @param aRecorder The recorder, or null to stop recording.
+     */
+    public void setRecorder(ArincRecorder aRecorder) {
+        mRecorder = aRecorder;
+    }
+    
+    /**
+     * Switches RX1 to interrupt-driven receive on the DR1 pin (DEI pin 6): the
+     * acquisition thread sleeps until the pin falls instead of polling it.
+     */
+    public void enableInterruptReceive() {
+        setDataReadyLine(new Pi4jDataReadyLine(provisionAsNecessary(6), true, PinPullResistance.PULL_DOWN));
+    }
+    
+    /**
+     * Installs the line that signals data ready on RX1. While one is set,
+     * isDataReadyRx1() reads it and the acquisition thread waits for its edges.
+     * @param aLine The line, or null to go back to polling pin 6.
+     */
+    public void setDataReadyLine(DataReadyLine aLine) {
+        DataReadyLine previous = mDataReady1;
+        if(previous != null) {
+            previous.close();
+        }
+        if(aLine != null) {
+            aLine.setEdgeListener(this::wakeReceiver);
+        }
+        mDataReady1 = aLine;
+        wakeReceiver();
+    }
+    
+    /**
+     * Waits for DR1 when a data ready line is installed, otherwise parks
+     * briefly as usual.
+     */
+    @Override
+    protected void awaitWord() {
+        DataReadyLine line = mDataReady1;
+        if(line == null) {
+            super.awaitWord();
+            return;
+        }
+        // Publish the waiter before looking at the line, so an edge between
+        // the check and the park still unparks us.
+        mReceiveWaiter = Thread.currentThread();
+        if(!line.isActive()) {
+            LockSupport.parkNanos(this, DATA_READY_TIMEOUT_NANOS);
+        }
+        mReceiveWaiter = null;
+    }
+    
+    private void wakeReceiver() {
+        Thread waiter = mReceiveWaiter;
+        if(waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+    
+    @Override
+    public long getLastTimestamp() {
+        return mLastTimestamp;
+    }
+    
+    @Override
+    public int getLastChannel() {
+        return RX1_CHANNEL;
+    }
+    
+    private int receiveWord(long aTimestampNanos) {
+        int dword = readWord();
+        mLastTimestamp = aTimestampNanos;
+        ArincRecorder recorder = mRecorder;
+        if(recorder != null) {
+            recorder.record(dword, aTimestampNanos, RX1_CHANNEL);
+        }
+        return dword;
+    }
+    
+    /**
+     * Installs a software parity stage on the receive path. The chip's own
+     * parity check is left disabled by init(), so this is the only place bad
+     * words get rejected.
+     * @param aChecker The checker to run every received word through, or null
+     *                 to accept all words unchecked.
+     */
+    public void setParityChecker(ArincParityChecker aChecker) {
+        mParityChecker = aChecker;
+    }
+    
+    public ArincParityChecker getParityChecker() {
+        return mParityChecker;
+    }
+    
+    /**
+     * Clocks both halves of the next word out of the RX1 FIFO.
+     * @return The raw 32-bit ARINC word.
+     */
+    protected int readWord() {
         mcpDriver.configureDirection(true);
         
         this.writeReceiverWordSelect2(false);
@@ -52,9 +210,7 @@ public class DEI1016Driver extends Arinc429 {
         
         this.writeReceiverWordSelect2(false);
         
-        int dword = (rxWord2 << 16) | rxWord1;
-        System.out.println("Got msg: " + Integer.toHexString(dword));
-        return ArincMessage.processArincFrame(dword);
+        return (rxWord2 << 16) | rxWord1;
     }
 
     @Override
@@ -63,26 +219,77 @@ public class DEI1016Driver extends Arinc429 {
     }
     
     private int packetize(ArincMessage aMsg) {
-        return 0;
+        return ArincParity.withParity(ArincWord.pack(aMsg.getLabel(), aMsg.getSdi(), aMsg.getData(), aMsg.getSignStatus(), 0));
     }
     
     public void writeMessage(int aDwordMsg) {
-        mcpDriver.configureDirection(false);        
-        // Give transmitter 50ms to get ready.
-        for(int i = 0; i < 5; i++) {
-            if(readTransmitterReady()) {
+        if(beginTxLoad()) {
+            loadTxWord(aDwordMsg);
+            writeEnableTransmitter(true);
+        }
+    }
+    
+    /**
+     * Transmits a run of words, loading them into the transmit FIFO a full
+     * FIFO at a time. The data bus stays in output mode throughout and the
+     * transmitter is disabled and re-enabled once per FIFO load rather than
+     * once per word, so words go out back to back.
+     * @param aWords Raw words, parity already applied (see ArincParity).
+     * @param aOffset
+     * @param aLength
+     * @return The number of words handed to the transmitter; less than aLength
+     *         if it stopped signalling ready.
+     */
+    public int writeMessages(int[] aWords, int aOffset, int aLength) {
+        if(aOffset < 0 || aLength < 0 || aOffset > aWords.length - aLength) {
+            throw new IndexOutOfBoundsException("offset " + aOffset + ", length " + aLength + ", array " + aWords.length);
+        }
+        int written = 0;
+        while(written < aLength) {
+            if(!beginTxLoad()) {
                 break;
             }
+            int count = Math.min(TX_FIFO_WORDS, aLength - written);
+            for(int i = 0; i < count; i++) {
+                loadTxWord(aWords[aOffset + written + i]);
+            }
+            
+            // Re-enable transmitter; it sends the whole FIFO without gaps.
+            writeEnableTransmitter(true);
+            written += count;
         }
-        if(!readTransmitterReady()) {
+        return written;
+    }
+    
+    /**
+     * Readies the transmitter for a FIFO load: puts the data bus in output
+     * mode, waits for the previous load to drain and disables the
+     * transmitter, which puts it into word loading mode.
+     * @return False if the transmitter never signalled ready; it is
+     *         left enabled in that case.
+     */
+    private boolean beginTxLoad() {
+        // Back to back writes leave the bus in output mode; skip the two I2C
+        // writes it takes to set it again.
+        if(mcpDriver.isInputMode()) {
+            mcpDriver.configureDirection(false);
+        }
+        // TXR goes high once the FIFO has drained, so the previous load
+        // has gone out and disabling the transmitter cuts nothing short.
+        if(!awaitTransmitterReady()) {
             System.err.println("DEI 1016 transmitter is not signalling that it is ready. Abort.");
-            return;
+            return false;
         }
-        
-        // Disable transmitter, which puts it into word loading mode.
         writeEnableTransmitter(false);
         nsPause(100);
-        
+        return true;
+    }
+    
+    /**
+     * Loads one word into the transmit FIFO. The transmitter must be disabled
+     * and the data bus in output mode.
+     */
+    private void loadTxWord(int aDwordMsg) {
         // Load word 1.
         writeDataBus(aDwordMsg & 0xffff);
         nsPause(100);
@@ -94,15 +301,28 @@ public class DEI1016Driver extends Arinc429 {
         nsPause(100);
         pulseLoadTxWord2();
         nsPause(100);
-        
-        // Re-enable transmitter.
-        writeEnableTransmitter(true);
-        
-        // Clear out data bus
-        //writeDataBus(0);
+    }
+    
+    /**
+     * Gives the transmitter up to 50ms to drain its FIFO.
+     * @return True if TXR is signalling ready.
+     */
+    private boolean awaitTransmitterReady() {
+        long deadline = System.nanoTime() + TX_READY_TIMEOUT_NANOS;
+        while(!readTransmitterReady()) {
+            if(System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, TX_READY_POLL_NANOS);
+        }
+        return true;
     }
     
     public boolean isDataReadyRx1() {
+        DataReadyLine line = mDataReady1;
+        if(line != null) {
+            return line.isActive();
+        }
         return !readDataReady1();
     }
         
@@ -330,7 +550,9 @@ public class DEI1016Driver extends Arinc429 {
     static int i2cErrorCounter = 0;
     protected void pinWrite(int aDeiPinNumber, boolean aHigh) {
         GpioPinDigitalMultipurpose pin = provisionAsNecessary(aDeiPinNumber);
-        pin.setMode(PinMode.DIGITAL_OUTPUT);
+        if(pin.getMode() != PinMode.DIGITAL_OUTPUT) {
+            pin.setMode(PinMode.DIGITAL_OUTPUT);
+        }
         if(aHigh) {
             pin.high();
         } else {
@@ -340,8 +562,14 @@ public class DEI1016Driver extends Arinc429 {
     
     protected boolean pinRead(int aDeiPinNumber) {
         GpioPinDigitalMultipurpose pin = provisionAsNecessary(aDeiPinNumber);
-        pin.setMode(PinMode.DIGITAL_INPUT);
-        pin.setPullResistance(PinPullResistance.PULL_DOWN);
+        // Only reconfigure when something changed; pi4j caches both settings,
+        // so the checks cost nothing on the hot data ready path.
+        if(pin.getMode() != PinMode.DIGITAL_INPUT) {
+            pin.setMode(PinMode.DIGITAL_INPUT);
+        }
+        if(!pin.isPullResistance(PinPullResistance.PULL_DOWN)) {
+            pin.setPullResistance(PinPullResistance.PULL_DOWN);
+        }
         if(pin.isHigh() && aDeiPinNumber != 6) {
             System.out.println("DEI Pin " + aDeiPinNumber + " [rpi=" + DEI_PIN_TO_HOST_GPIO_NUM_MAP[aDeiPinNumber] + "] is HIGH");
         }
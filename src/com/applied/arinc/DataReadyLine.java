@@ -0,0 +1,34 @@
+package com.applied.arinc;
+
+/**
+ * A data ready output from an ARINC device, seen from the host. Lets a driver
+ * sleep until the device signals that a word is waiting instead of polling for
+ * one. Pi4jDataReadyLine watches a real GPIO pin; SimulatedDataReadyLine is
+ * driven from code, so the waiting can be exercised without hardware.
+ * @author James
+ */
+public interface DataReadyLine {
+    public interface EdgeListener {
+        /**
+         * Called whenever the line becomes active. May be called from a GPIO
+         * event thread, so it must not block.
+         */
+        public void onActive();
+    }
+
+    /**
+     * @return True while the device has data waiting.
+     */
+    public boolean isActive();
+
+    /**
+     * @param aListener The listener to call on every inactive to active edge,
+     *                  or null for none.
+     */
+    public void setEdgeListener(EdgeListener aListener);
+
+    /**
+     * Stops edge notification and releases the line.
+     */
+    public void close();
+}
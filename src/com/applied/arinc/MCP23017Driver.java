@@ -24,13 +24,21 @@ public class MCP23017Driver {
     private static final int REGISTER_DEFVAL_B = 0x07;
     private static final int REGISTER_INTCON_A = 0x08;
     private static final int REGISTER_INTCON_B = 0x09;
+    private static final int REGISTER_IOCON = 0x0A;
     private static final int REGISTER_GPPU_A = 0x0C;
     private static final int REGISTER_GPPU_B = 0x0D;
     private static final int REGISTER_INTF_A = 0x0E;
     private static final int REGISTER_INTF_B = 0x0F;
+    private static final int REGISTER_INTCAP_A = 0x10;
+    private static final int REGISTER_INTCAP_B = 0x11;
     private static final int REGISTER_GPIO_A = 0x12;
     private static final int REGISTER_GPIO_B = 0x13;
     
+    // IOCON bits.
+    private static final int IOCON_MIRROR = 0x40;
+    private static final int IOCON_ODR = 0x04;
+    private static final int IOCON_INTPOL = 0x02;
+    
     public MCP23017Driver(int aI2cBus, int aI2cAddress){
         mI2cAddress = aI2cAddress;
         mI2cBus = aI2cBus;
@@ -46,17 +54,10 @@ public class MCP23017Driver {
             // Configure direction
             configureDirection(mIsInputMode);
 
-            // set all default pin interrupts
-            mDevice.write(REGISTER_GPINTEN_A, (byte) 0x00);
-            mDevice.write(REGISTER_GPINTEN_B, (byte) 0x00);
-
-            // set all default pin interrupt default values
-            mDevice.write(REGISTER_DEFVAL_A, (byte) 0x00);
-            mDevice.write(REGISTER_DEFVAL_B, (byte) 0x00);
-
-            // set all default pin interrupt comparison behaviors
-            mDevice.write(REGISTER_INTCON_A, (byte) 0x00);
-            mDevice.write(REGISTER_INTCON_B, (byte) 0x00);
+            // Restore the interrupt configuration (none unless
+            // configureInterrupts() was called), so a reinitialize after an
+            // I2C error does not silently drop it.
+            writeInterruptConfiguration();
 
             // set all default pin states
             mDevice.write(REGISTER_GPIO_A, (byte) 0x00);
@@ -93,6 +94,14 @@ public class MCP23017Driver {
         return mInitialized;
     }
     
+    /**
+     * @return True if both banks were last configured as inputs. init() and
+     *         reinitialize() restore this direction.
+     */
+    public boolean isInputMode() {
+        return mIsInputMode;
+    }
+    
     public boolean configureDirection(boolean aIsInputMode) {
         if(!initialized()) {
             return false;
@@ -112,6 +121,75 @@ public class MCP23017Driver {
         return false;
     }
     
+    /**
+     * Configures interrupt-on-change. Masks are 16 bits, bank A in the low
+     * byte and bank B in the high byte, matching the data bus layout.
+     * @param aEnableMask Pins which raise an interrupt (GPINTEN).
+     * @param aCompareMask Of those, pins which interrupt when they differ from
+     *                     aDefaultValues (INTCON set); the rest interrupt on
+     *                     any change.
+     * @param aDefaultValues The levels compared against (DEFVAL).
+     * @return False if the chip could not be written.
+     */
+    public boolean configureInterrupts(int aEnableMask, int aCompareMask, int aDefaultValues) {
+        mInterruptEnable = aEnableMask & 0xffff;
+        mInterruptCompare = aCompareMask & 0xffff;
+        mInterruptDefaults = aDefaultValues & 0xffff;
+        if(!initialized()) {
+            return false;
+        }
+        try {
+            writeInterruptConfiguration();
+            return true;
+        }catch(Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+    
+    /**
+     * Configures the INTA/INTB output pins. The host can watch either one with
+     * a Pi4jDataReadyLine instead of polling the chip over I2C.
+     * @param aMirror If true, INTA and INTB both signal an interrupt on either
+     *                bank, so a single host GPIO is enough.
+     * @param aOpenDrain If true, the outputs are open drain so several chips
+     *                   can share a line; polarity is then ignored.
+     * @param aActiveHigh If true, the outputs go high on interrupt; otherwise low.
+     * @return False if the chip could not be written.
+     */
+    public boolean configureInterruptOutput(boolean aMirror, boolean aOpenDrain, boolean aActiveHigh) {
+        mIoConfiguration = (aMirror ? IOCON_MIRROR : 0) |
+                           (aOpenDrain ? IOCON_ODR : 0) |
+                           (aActiveHigh ? IOCON_INTPOL : 0);
+        if(!initialized()) {
+            return false;
+        }
+        try {
+            mDevice.write(REGISTER_IOCON, (byte) mIoConfiguration);
+            return true;
+        }catch(Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+    
+    /**
+     * Reads which pins caused the pending interrupt (INTF). Does not clear it.
+     * @return The flags, bank A in the low byte, or INVALID_READ.
+     */
+    public int readInterruptFlags() {
+        return readRegisterPair(REGISTER_INTF_A);
+    }
+    
+    /**
+     * Reads the pin levels latched when the interrupt occurred (INTCAP). This
+     * clears the interrupt; read the flags first if they are needed.
+     * @return The captured levels, bank A in the low byte, or INVALID_READ.
+     */
+    public int readInterruptCapture() {
+        return readRegisterPair(REGISTER_INTCAP_A);
+    }
+    
     public int readByteBankA() {
         if(!initialized()) {
             return INVALID_READ;
@@ -178,6 +256,37 @@ public class MCP23017Driver {
         return false;
     }
     
+    private void writeInterruptConfiguration() throws IOException {
+        mDevice.write(REGISTER_IOCON, (byte) mIoConfiguration);
+        
+        // DEFVAL and INTCON before GPINTEN, so no interrupt fires against a
+        // stale comparison.
+        mDevice.write(REGISTER_DEFVAL_A, (byte) mInterruptDefaults);
+        mDevice.write(REGISTER_DEFVAL_B, (byte) (mInterruptDefaults >> 8));
+        mDevice.write(REGISTER_INTCON_A, (byte) mInterruptCompare);
+        mDevice.write(REGISTER_INTCON_B, (byte) (mInterruptCompare >> 8));
+        mDevice.write(REGISTER_GPINTEN_A, (byte) mInterruptEnable);
+        mDevice.write(REGISTER_GPINTEN_B, (byte) (mInterruptEnable >> 8));
+    }
+    
+    /**
+     * Reads an A/B register pair in one I2C transaction; with IOCON.BANK clear
+     * the B register directly follows the A one.
+     */
+    private int readRegisterPair(int aRegisterA) {
+        if(!initialized()) {
+            return INVALID_READ;
+        }
+        try {
+            if(mDevice.read(aRegisterA, mPairBuffer, 0, 2) == 2) {
+                return (mPairBuffer[0] & 0xff) | ((mPairBuffer[1] & 0xff) << 8);
+            }
+        }catch(IOException e) {
+            e.printStackTrace();
+        }
+        return INVALID_READ;
+    }
+    
     private I2CBus mBus;
     private I2CDevice mDevice;
     
@@ -185,4 +294,9 @@ public class MCP23017Driver {
     int mI2cBus;
     boolean mIsInputMode;
     boolean mInitialized = false;
+    int mInterruptEnable;
+    int mInterruptCompare;
+    int mInterruptDefaults;
+    int mIoConfiguration;
+    private final byte[] mPairBuffer = new byte[2];
 }
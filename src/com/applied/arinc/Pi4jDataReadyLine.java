@@ -0,0 +1,61 @@
+package com.applied.arinc;
+
+import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.GpioPinDigitalMultipurpose;
+import com.pi4j.io.gpio.PinMode;
+import com.pi4j.io.gpio.PinPullResistance;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+
+/**
+ * A data ready line on a pi4j GPIO input. The pin is configured once, here,
+ * and edges come from pi4j's interrupt monitoring rather than from reads, so
+ * checking the line costs a single pin read.
+ * @author James
+ */
+public class Pi4jDataReadyLine implements DataReadyLine, GpioPinListenerDigital {
+    /**
+     * @param aPin The input pin. A multipurpose pin is switched to input mode.
+     * @param aActiveLow True if the device pulls the line low when data is
+     *                   waiting, as the DEI1016 does.
+     * @param aPull The pull resistance to apply.
+     */
+    public Pi4jDataReadyLine(GpioPinDigitalInput aPin, boolean aActiveLow, PinPullResistance aPull) {
+        mPin = aPin;
+        mActiveState = aActiveLow ? PinState.LOW : PinState.HIGH;
+        if(aPin instanceof GpioPinDigitalMultipurpose) {
+            ((GpioPinDigitalMultipurpose)aPin).setMode(PinMode.DIGITAL_INPUT);
+        }
+        aPin.setPullResistance(aPull);
+        aPin.addListener(this);
+    }
+
+    @Override
+    public boolean isActive() {
+        return mPin.getState() == mActiveState;
+    }
+
+    @Override
+    public void setEdgeListener(EdgeListener aListener) {
+        mListener = aListener;
+    }
+
+    @Override
+    public void close() {
+        mListener = null;
+        mPin.removeListener(this);
+    }
+
+    @Override
+    public void handleGpioPinDigitalStateChangeEvent(GpioPinDigitalStateChangeEvent aEvent) {
+        EdgeListener listener = mListener;
+        if(listener != null && aEvent.getState() == mActiveState) {
+            listener.onActive();
+        }
+    }
+
+    private final GpioPinDigitalInput mPin;
+    private final PinState mActiveState;
+    private volatile EdgeListener mListener;
+}
@@ -0,0 +1,202 @@
+package com.applied.arinc;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces simulated words so consumers see bus-like timing. Three modes:
+ *     - MAX_SPEED: no pacing at all, for throughput benchmarks;
+ *     - RECORDED: words are released at their recorded timestamps;
+ *     - BUS_RATE: words are released back to back at a nominal bus rate, each
+ *       taking 32 bit times plus the 4 bit inter-word gap.
+ * The paced modes take a speedup so traffic can be replayed at 1x, 10x, 100x
+ * real time, and so on.
+ *
+ * The schedule is absolute: each deadline is computed from the first word, so a
+ * late word does not push back the ones after it. Waiting parks the thread while
+ * the deadline is far off and spins for the last stretch. The spin window is
+ * calibrated once from how much parkNanos() overshoots on this machine, which
+ * keeps release jitter in the microseconds without burning a core between
+ * low-speed words. An early wakeup parks again rather than spinning out the
+ * gap, and cancel() ends a wait at once, however long the recorded gap.
+ * @author James
+ */
+public class ReplayPacer {
+    public enum Mode {
+        MAX_SPEED,
+        RECORDED,
+        BUS_RATE
+    }
+
+    public static final int HIGH_SPEED_BPS = 100000;
+    public static final int LOW_SPEED_BPS = 12500;
+    public static final int WORD_BITS = 32;
+    public static final int GAP_BITS = 4;
+
+    private static final int CALIBRATION_SAMPLES = 50;
+    private static final long CALIBRATION_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long MAX_SPIN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static volatile long sSpinNanos = -1;
+
+    /**
+     * @return A pacer that never waits.
+     */
+    public static ReplayPacer maxSpeed() {
+        return new ReplayPacer(Mode.MAX_SPEED, 0, 1.0);
+    }
+
+    /**
+     * @param aSpeedup 1.0 for real time, 10.0 for ten times faster, etc.
+     * @return A pacer following recorded timestamps.
+     */
+    public static ReplayPacer recorded(double aSpeedup) {
+        return new ReplayPacer(Mode.RECORDED, 0, aSpeedup);
+    }
+
+    /**
+     * @param aBitsPerSecond Usually HIGH_SPEED_BPS or LOW_SPEED_BPS.
+     * @param aSpeedup 1.0 for real time, 10.0 for ten times faster, etc.
+     * @return A pacer releasing words at a fixed bus rate.
+     */
+    public static ReplayPacer busRate(int aBitsPerSecond, double aSpeedup) {
+        return new ReplayPacer(Mode.BUS_RATE, aBitsPerSecond, aSpeedup);
+    }
+
+    private ReplayPacer(Mode aMode, int aBitsPerSecond, double aSpeedup) {
+        if(aSpeedup <= 0 || (aMode == Mode.BUS_RATE && aBitsPerSecond <= 0)) {
+            throw new IllegalArgumentException("Speedup and bus rate must be positive.");
+        }
+        mMode = aMode;
+        mSpeedup = aSpeedup;
+        mWordNanos = aMode == Mode.BUS_RATE
+                ? (double)TimeUnit.SECONDS.toNanos(1) * (WORD_BITS + GAP_BITS) / aBitsPerSecond / aSpeedup
+                : 0;
+        if(aMode != Mode.MAX_SPEED) {
+            mSpinNanos = spinNanos();
+        }
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    public double getSpeedup() {
+        return mSpeedup;
+    }
+
+    /**
+     * Blocks until the next word is due.
+     * @param aRecordedNanos The word's recorded timestamp. Only used in RECORDED
+     *                       mode.
+     * @return False if cancel() cut the wait short.
+     */
+    public boolean pace(long aRecordedNanos) {
+        if(mMode == Mode.MAX_SPEED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if(!mStarted) {
+            mStarted = true;
+            mStartNanos = now;
+            mFirstRecordedNanos = aRecordedNanos;
+            mWords = 1;
+            return !mCancelled;
+        }
+        long deadline;
+        if(mMode == Mode.RECORDED) {
+            deadline = mStartNanos + (long)((aRecordedNanos - mFirstRecordedNanos) / mSpeedup);
+        } else {
+            deadline = mStartNanos + (long)(mWords * mWordNanos);
+        }
+        mWords++;
+
+        mWaiter = Thread.currentThread();
+        try {
+            // Park again after an early return, spurious or from an unpark,
+            // so only the final window is ever spun.
+            long remaining;
+            while((remaining = deadline - System.nanoTime()) > mSpinNanos) {
+                if(mCancelled) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining - mSpinNanos);
+            }
+            while((now = System.nanoTime()) < deadline) {
+                // Spin out the remainder.
+            }
+        } finally {
+            mWaiter = null;
+        }
+        long late = now - deadline;
+        if(late > mMaxLatenessNanos) {
+            mMaxLatenessNanos = late;
+        }
+        return !mCancelled;
+    }
+
+    /**
+     * Ends the current wait, if any, and makes every later pace() return at
+     * once until reset(). May be called from any thread; Arinc429 sources
+     * call it from stopAcquisition().
+     */
+    public void cancel() {
+        mCancelled = true;
+        Thread waiter = mWaiter;
+        if(waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Restarts the schedule, e.g. after seeking, and clears cancel(). The next
+     * word is released immediately.
+     */
+    public void reset() {
+        mStarted = false;
+        mCancelled = false;
+    }
+
+    /**
+     * @return The worst amount by which a word was released after its deadline.
+     */
+    public long getMaxLatenessNanos() {
+        return mMaxLatenessNanos;
+    }
+
+    /**
+     * Measures how far parkNanos() overshoots on this machine. Done once per
+     * process; the result is the window spun out instead of parked.
+     */
+    private static long spinNanos() {
+        long spin = sSpinNanos;
+        if(spin < 0) {
+            long[] overshoot = new long[CALIBRATION_SAMPLES];
+            for(int i = 0; i < CALIBRATION_SAMPLES; i++) {
+                long start = System.nanoTime();
+                LockSupport.parkNanos(CALIBRATION_PARK_NANOS);
+                overshoot[i] = System.nanoTime() - start - CALIBRATION_PARK_NANOS;
+            }
+            // Size for the 90th percentile; a rare scheduler hiccup shouldn't
+            // turn every wait into a spin.
+            Arrays.sort(overshoot);
+            spin = Math.min(MAX_SPIN_NANOS, Math.max(MIN_SPIN_NANOS, overshoot[CALIBRATION_SAMPLES * 9 / 10] * 2));
+            sSpinNanos = spin;
+        }
+        return spin;
+    }
+
+    private final Mode mMode;
+    private final double mSpeedup;
+    private final double mWordNanos;
+    private long mSpinNanos;
+
+    private boolean mStarted;
+    private long mStartNanos;
+    private long mFirstRecordedNanos;
+    private long mWords;
+    private long mMaxLatenessNanos;
+    private volatile boolean mCancelled;
+    private volatile Thread mWaiter;
+}
@@ -0,0 +1,39 @@
+package com.applied.arinc;
+
+/**
+ * A data ready line driven from code. setActive(true) on an inactive line fires
+ * the edge listener on the calling thread, just as the pi4j event thread would
+ * for a real pin.
+ * @author James
+ */
+public class SimulatedDataReadyLine implements DataReadyLine {
+    /**
+     * @param aActive
+     */
+    public void setActive(boolean aActive) {
+        boolean wasActive = mActive;
+        mActive = aActive;
+        EdgeListener listener = mListener;
+        if(aActive && !wasActive && listener != null) {
+            listener.onActive();
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        return mActive;
+    }
+
+    @Override
+    public void setEdgeListener(EdgeListener aListener) {
+        mListener = aListener;
+    }
+
+    @Override
+    public void close() {
+        mListener = null;
+    }
+
+    private volatile boolean mActive;
+    private volatile EdgeListener mListener;
+}
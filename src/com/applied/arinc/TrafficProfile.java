@@ -0,0 +1,148 @@
+package com.applied.arinc;
+
+import com.applied.arinc.messages.ArincBnr;
+import com.applied.arinc.messages.ArincWord;
+import java.util.Arrays;
+
+/**
+ * Describes a synthetic traffic mix for Arinc429TrafficGenerator: which labels
+ * are sent, on which SDI, how often, and how their values move over time.
+ *
+ * BNR labels (those known to ArincBnr) follow a trajectory in engineering
+ * units:
+ *     - constant: a fixed value;
+ *     - ramp: a value changing at a fixed rate per second, e.g. a sweeping
+ *       bearing, wrapping at the label's range;
+ *     - sine: an oscillation about a centre, e.g. a needle deviation.
+ * Any trajectory can add uniform noise. Other labels carry a fixed raw data
+ * field.
+ *
+ * Entries are held in flat arrays so the generator reads them without touching
+ * any per-entry objects.
+ * @author James
+ */
+public class TrafficProfile {
+    static final int CONSTANT = 0;
+    static final int RAMP = 1;
+    static final int SINE = 2;
+    static final int RAW = 3;
+
+    public static final int SSM_NORMAL = 3;
+
+    /**
+     * @return The traffic a nav receiver sends to a CDI: a sweeping VOR
+     *         omnibearing, oscillating localizer and glideslope deviations,
+     *         the selected course and the tuned ILS frequency.
+     */
+    public static TrafficProfile cdi() {
+        return new TrafficProfile()
+                .ramp(0222, 0, 20, 0, 6, 0.05)         // VOR omnibearing, 6 deg/s
+                .sine(0173, 0, 20, 0, 0.1, 8, 0.001)   // Localizer deviation, DDM
+                .sine(0174, 0, 20, 0, 0.15, 12, 0.001) // Glideslope deviation, DDM
+                .constant(0100, 0, 5, 90, 0)           // Selected course
+                .raw(0033, 0, 0, 5, 0x10900);          // ILS frequency, BCD 110.90 MHz
+    }
+
+    /**
+     * Sends a fixed value.
+     * @param aLabel
+     * @param aSdi
+     * @param aRateHz Words per second.
+     * @param aValue
+     * @param aNoise Amplitude of uniform noise added to each word.
+     * @return This profile.
+     */
+    public TrafficProfile constant(int aLabel, int aSdi, double aRateHz, double aValue, double aNoise) {
+        return add(CONSTANT, aLabel, aSdi, SSM_NORMAL, aRateHz, aValue, 0, 0, aNoise, 0);
+    }
+
+    /**
+     * Sends a value changing linearly with time.
+     * @param aLabel
+     * @param aSdi
+     * @param aRateHz Words per second.
+     * @param aStart Value at time 0.
+     * @param aPerSecond Change per second.
+     * @param aNoise Amplitude of uniform noise added to each word.
+     * @return This profile.
+     */
+    public TrafficProfile ramp(int aLabel, int aSdi, double aRateHz, double aStart, double aPerSecond, double aNoise) {
+        return add(RAMP, aLabel, aSdi, SSM_NORMAL, aRateHz, aStart, aPerSecond, 0, aNoise, 0);
+    }
+
+    /**
+     * Sends a value oscillating about aCentre.
+     * @param aLabel
+     * @param aSdi
+     * @param aRateHz Words per second.
+     * @param aCentre
+     * @param aAmplitude
+     * @param aPeriodSeconds
+     * @param aNoise Amplitude of uniform noise added to each word.
+     * @return This profile.
+     */
+    public TrafficProfile sine(int aLabel, int aSdi, double aRateHz, double aCentre, double aAmplitude,
+                               double aPeriodSeconds, double aNoise) {
+        return add(SINE, aLabel, aSdi, SSM_NORMAL, aRateHz, aCentre, aAmplitude, 2 * Math.PI / aPeriodSeconds, aNoise, 0);
+    }
+
+    /**
+     * Sends a fixed data field, e.g. for BCD or discrete labels.
+     * @param aLabel
+     * @param aSdi
+     * @param aSsm
+     * @param aRateHz Words per second.
+     * @param aData The 19-bit data field.
+     * @return This profile.
+     */
+    public TrafficProfile raw(int aLabel, int aSdi, int aSsm, double aRateHz, int aData) {
+        return add(RAW, aLabel, aSdi, aSsm, aRateHz, 0, 0, 0, 0, aData);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    private TrafficProfile add(int aKind, int aLabel, int aSdi, int aSsm, double aRateHz,
+                               double aA, double aB, double aC, double aNoise, int aData) {
+        if(aRateHz <= 0) {
+            throw new IllegalArgumentException("Label " + Integer.toOctalString(aLabel) + " needs a positive rate.");
+        }
+        if(aKind != RAW && !ArincBnr.isDefined(aLabel)) {
+            throw new IllegalArgumentException("Label " + Integer.toOctalString(aLabel) + " has no BNR scaling; use raw().");
+        }
+        if(mSize == mKind.length) {
+            int capacity = mSize * 2;
+            mKind = Arrays.copyOf(mKind, capacity);
+            mKey = Arrays.copyOf(mKey, capacity);
+            mData = Arrays.copyOf(mData, capacity);
+            mPeriodNanos = Arrays.copyOf(mPeriodNanos, capacity);
+            mA = Arrays.copyOf(mA, capacity);
+            mB = Arrays.copyOf(mB, capacity);
+            mC = Arrays.copyOf(mC, capacity);
+            mNoise = Arrays.copyOf(mNoise, capacity);
+        }
+        mKind[mSize] = aKind;
+        mKey[mSize] = ArincWord.pack(aLabel, aSdi, 0, aSsm, 0);
+        mData[mSize] = aData & ArincWord.DATA_MASK;
+        mPeriodNanos[mSize] = Math.max(1, Math.round(1e9 / aRateHz));
+        mA[mSize] = aA;
+        mB[mSize] = aB;
+        mC[mSize] = aC;
+        mNoise[mSize] = aNoise;
+        mSize++;
+        return this;
+    }
+
+    // Parallel arrays, one slot per entry. mKey is the word with a zero data
+    // field and no parity.
+    int[] mKind = new int[8];
+    int[] mKey = new int[8];
+    int[] mData = new int[8];
+    long[] mPeriodNanos = new long[8];
+    double[] mA = new double[8];
+    double[] mB = new double[8];
+    double[] mC = new double[8];
+    double[] mNoise = new double[8];
+    int mSize;
+}
@@ -0,0 +1,177 @@
+package com.applied.arinc.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous flight recorder. The acquisition thread hands words to record(),
+ * which copies them into a preallocated ring and returns immediately; a
+ * background thread drains the ring in batches, formats fixed size binary
+ * records and writes them to a CaptureSink.
+ *
+ * record() never blocks and never allocates. If the writer falls behind and the
+ * ring fills, new words are dropped and counted rather than stalling
+ * acquisition. Memory use is fixed at construction: 16 bytes per ring slot plus
+ * one batch buffer.
+ * @author James
+ */
+public class ArincRecorder implements Closeable {
+    private static final int BATCH_RECORDS = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Starts a recorder writing to aSink.
+     * @param aSink
+     * @param aCapacity Ring size in words, rounded up to a power of two.
+     * @param aSyncIntervalMillis How often to force written records to storage.
+     *                            This bounds how much is lost on power failure.
+     *                            0 syncs after every batch.
+     */
+    public ArincRecorder(CaptureSink aSink, int aCapacity, long aSyncIntervalMillis) {
+        int capacity = Integer.highestOneBit(Math.max(aCapacity, 2) - 1) << 1;
+        mSink = aSink;
+        mMask = capacity - 1;
+        mTimestamps = new long[capacity];
+        mChannels = new int[capacity];
+        mWords = new int[capacity];
+        mSyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(aSyncIntervalMillis);
+        mBatch = ByteBuffer.allocateDirect(BATCH_RECORDS * CaptureFormat.RECORD_SIZE).order(CaptureFormat.BYTE_ORDER);
+        mWriter = new Thread(this::writerLoop, "ArincRecorder");
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    /**
+     * Starts a recorder writing a single, indexed capture file.
+     * @param aFile
+     * @param aCapacity
+     * @param aSyncIntervalMillis
+     * @return
+     * @throws IOException
+     */
+    public static ArincRecorder open(Path aFile, int aCapacity, long aSyncIntervalMillis) throws IOException {
+        return new ArincRecorder(new IndexedCaptureSink(aFile), aCapacity, aSyncIntervalMillis);
+    }
+
+    /**
+     * Queues a word for recording. Must only be called from one thread.
+     * @param aWord
+     * @param aTimestampNanos
+     * @param aChannel
+     * @return False if the ring was full and the word was dropped.
+     */
+    public boolean record(int aWord, long aTimestampNanos, int aChannel) {
+        long head = mProducerHead;
+        if(head - mTail.get() > mMask || mClosed) {
+            mDropped.lazySet(mDropped.get() + 1);
+            return false;
+        }
+        int slot = (int)head & mMask;
+        mTimestamps[slot] = aTimestampNanos;
+        mChannels[slot] = aChannel;
+        mWords[slot] = aWord;
+        mProducerHead = head + 1;
+        mHead.lazySet(head + 1);
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public long getWrittenCount() {
+        return mTail.get();
+    }
+
+    /**
+     * Stops accepting words, writes out everything already queued, syncs and
+     * closes the sink.
+     * @throws IOException If the writer thread failed at any point.
+     */
+    @Override
+    public void close() throws IOException {
+        mClosed = true;
+        LockSupport.unpark(mWriter);
+        try {
+            mWriter.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(mFailure != null) {
+            throw mFailure;
+        }
+    }
+
+    private void writerLoop() {
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        try {
+            while(true) {
+                boolean closing = mClosed;
+                long tail = mTail.get();
+                long available = mHead.get() - tail;
+                if(available > 0) {
+                    int count = (int)Math.min(available, BATCH_RECORDS);
+                    mBatch.clear();
+                    for(int i = 0; i < count; i++) {
+                        int slot = (int)(tail + i) & mMask;
+                        CaptureFormat.putRecord(mBatch, mTimestamps[slot], mChannels[slot], mWords[slot]);
+                    }
+                    // Release the slots before the write so acquisition can reuse them.
+                    mTail.lazySet(tail + count);
+                    mBatch.flip();
+                    mSink.write(mBatch);
+                    unsynced = true;
+                } else if(closing) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+
+                long now = System.nanoTime();
+                if(unsynced && now - lastSync >= mSyncIntervalNanos) {
+                    mSink.sync();
+                    lastSync = now;
+                    unsynced = false;
+                }
+            }
+            mSink.sync();
+        } catch(IOException e) {
+            e.printStackTrace();
+            mFailure = e;
+            mClosed = true;
+        } finally {
+            try {
+                mSink.close();
+            } catch(IOException e) {
+                if(mFailure == null) {
+                    mFailure = e;
+                }
+            }
+        }
+    }
+
+    private final CaptureSink mSink;
+    private final int mMask;
+    private final long[] mTimestamps;
+    private final int[] mChannels;
+    private final int[] mWords;
+    private final long mSyncIntervalNanos;
+    private final ByteBuffer mBatch;
+    private final Thread mWriter;
+
+    // Producer side. mProducerHead is the producer's private copy of mHead.
+    private long mProducerHead;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    // Consumer side.
+    private final AtomicLong mTail = new AtomicLong();
+    private volatile boolean mClosed;
+    private volatile IOException mFailure;
+}
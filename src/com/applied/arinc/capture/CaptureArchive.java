@@ -0,0 +1,62 @@
+package com.applied.arinc.capture;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Converts between capture files and compressed capture archives.
+ * @author James
+ */
+public final class CaptureArchive {
+    private static final int BATCH_RECORDS = 4096;
+
+    private CaptureArchive() {
+    }
+
+    /**
+     * Compresses a capture file into an archive.
+     * @param aCapture
+     * @param aArchive
+     * @return The number of records written.
+     * @throws IOException
+     */
+    public static long compress(Path aCapture, Path aArchive) throws IOException {
+        CaptureFile capture = CaptureFile.open(aCapture);
+        try(CaptureArchiveWriter writer = new CaptureArchiveWriter(Files.newOutputStream(aArchive))) {
+            long count = capture.getRecordCount();
+            for(long i = 0; i < count; i++) {
+                writer.write(capture.getTimestamp(i), capture.getChannel(i), capture.getWord(i));
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Expands an archive back into an indexed capture file. A truncated archive
+     * yields the records before the cut.
+     * @param aArchive
+     * @param aCapture
+     * @return The number of records written.
+     * @throws IOException
+     */
+    public static long decompress(Path aArchive, Path aCapture) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_RECORDS * CaptureFormat.RECORD_SIZE).order(CaptureFormat.BYTE_ORDER);
+        try(CaptureArchiveReader reader = new CaptureArchiveReader(new BufferedInputStream(Files.newInputStream(aArchive)));
+            IndexedCaptureSink sink = new IndexedCaptureSink(aCapture)) {
+            while(reader.next()) {
+                CaptureFormat.putRecord(batch, reader.getTimestamp(), reader.getChannel(), reader.getWord());
+                if(!batch.hasRemaining()) {
+                    batch.flip();
+                    sink.write(batch);
+                    batch.clear();
+                }
+            }
+            batch.flip();
+            sink.write(batch);
+            return reader.getRecordCount();
+        }
+    }
+}
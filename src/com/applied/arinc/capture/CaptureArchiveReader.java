@@ -0,0 +1,154 @@
+package com.applied.arinc.capture;
+
+import com.applied.arinc.messages.ArincWord;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming decompressor for archives written by CaptureArchiveWriter. Works
+ * like a cursor: next() advances to the following record, whose fields are then
+ * read through the getters. Nothing is allocated per record.
+ * @author James
+ */
+public class CaptureArchiveReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public CaptureArchiveReader(InputStream aIn) throws IOException {
+        mIn = aIn;
+        try {
+            int magic = getInt();
+            int version = getInt();
+            if(magic != CaptureArchiveWriter.MAGIC || version != CaptureArchiveWriter.VERSION) {
+                throw new IOException("Not a supported ARINC capture archive.");
+            }
+        } catch(EOFException e) {
+            throw new IOException("ARINC capture archive is missing its header.", e);
+        }
+    }
+
+    /**
+     * Advances to the next record.
+     * @return False at the end of the archive. An archive cut off part way
+     *         through a record also ends there; see isTruncated().
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        try {
+            if(mPos == mLimit && !fill()) {
+                return false;
+            }
+            int code = (int)getVarint();
+            while(code == CaptureArchiveWriter.CODE_CHANNEL) {
+                // Only the low 32 bits carry the zig-zag channel; older
+                // writers sign-extended it.
+                int channel = (int)getVarint();
+                mChannel = (channel >>> 1) ^ -(channel & 1);
+                code = (int)getVarint();
+            }
+            int key;
+            if(code == CaptureArchiveWriter.CODE_NEW_KEY) {
+                key = (int)getVarint();
+                if(mKeyCount == mKeys.length) {
+                    throw new IOException("ARINC capture archive dictionary overflow.");
+                }
+                mKeys[mKeyCount++] = key;
+            } else {
+                int index = code - CaptureArchiveWriter.CODE_FIRST_INDEX;
+                if(index >= mKeyCount) {
+                    throw new IOException("ARINC capture archive refers to unknown dictionary entry " + index + ".");
+                }
+                key = mKeys[index];
+            }
+            long delta = getVarint();
+            mTimestamp += (delta >>> 1) ^ -(delta & 1);
+
+            int label = key & ArincWord.LABEL_MASK;
+            int data = ((int)getVarint() ^ mLastData[label]) & ArincWord.DATA_MASK;
+            mLastData[label] = data;
+            mWord = CaptureArchiveWriter.wordOf(key, data);
+            mRecords++;
+            return true;
+        } catch(EOFException e) {
+            mTruncated = true;
+            return false;
+        }
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public int getChannel() {
+        return mChannel;
+    }
+
+    public int getWord() {
+        return mWord;
+    }
+
+    public long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * @return True if the archive ended part way through a record.
+     */
+    public boolean isTruncated() {
+        return mTruncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    private boolean fill() throws IOException {
+        int n = mIn.read(mBuffer, 0, mBuffer.length);
+        if(n <= 0) {
+            return false;
+        }
+        mPos = 0;
+        mLimit = n;
+        return true;
+    }
+
+    private int getByte() throws IOException {
+        if(mPos == mLimit && !fill()) {
+            throw new EOFException();
+        }
+        return mBuffer[mPos++];
+    }
+
+    private int getInt() throws IOException {
+        return ((getByte() & 0xff) << 24) | ((getByte() & 0xff) << 16) |
+               ((getByte() & 0xff) << 8) | (getByte() & 0xff);
+    }
+
+    private long getVarint() throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = getByte();
+            value |= (long)(b & 0x7f) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in ARINC capture archive.");
+    }
+
+    private final InputStream mIn;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mPos;
+    private int mLimit;
+
+    private final int[] mKeys = new int[CaptureArchiveWriter.KEY_COUNT];
+    private int mKeyCount;
+    private final int[] mLastData = new int[256];
+    private long mTimestamp;
+    private int mChannel;
+    private int mWord;
+    private long mRecords;
+    private boolean mTruncated;
+}
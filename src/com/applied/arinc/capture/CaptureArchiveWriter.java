@@ -0,0 +1,155 @@
+package com.applied.arinc.capture;
+
+import com.applied.arinc.messages.ArincWord;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming compressor for capture records. ARINC traffic is very repetitive,
+ * so each record is coded against what came before it:
+ *     - the timestamp as a zig-zag varint delta from the previous record;
+ *     - label, SDI, SSM and parity together as an index into a dictionary that
+ *       is built as new combinations appear;
+ *     - the 19-bit data field as a varint of its XOR with the previous data
+ *       seen for the same label, which is small when only low bits change;
+ *     - the channel only when it changes.
+ * A typical record takes 4 to 6 bytes instead of 16. Encoding is a handful of
+ * shifts per record into a private buffer, cheap enough to keep up with a live
+ * bus on one core.
+ *
+ * Stream layout: int MAGIC, int VERSION (big endian), then records. Each record
+ * starts with a varint code: 0 = the channel changes (zig-zag varint channel
+ * follows, then the record's code again), 1 = a new dictionary entry (varint key
+ * follows), n >= 2 = dictionary entry n - 2. The code is followed by the
+ * timestamp delta and the data XOR.
+ * @author James
+ */
+public class CaptureArchiveWriter implements Closeable {
+    public static final int MAGIC = 0x41345a41; // "A4ZA"
+    public static final int VERSION = 1;
+
+    static final int CODE_CHANNEL = 0;
+    static final int CODE_NEW_KEY = 1;
+    static final int CODE_FIRST_INDEX = 2;
+    static final int KEY_COUNT = 1 << 13;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Longest record: 3 codes/keys of 5 bytes, a channel of 5 and two 10 byte varints.
+    private static final int MAX_RECORD_BYTES = 40;
+
+    public CaptureArchiveWriter(OutputStream aOut) throws IOException {
+        mOut = aOut;
+        Arrays.fill(mKeyIndex, -1);
+        putInt(MAGIC);
+        putInt(VERSION);
+    }
+
+    /**
+     * Appends one record.
+     * @param aTimestampNanos
+     * @param aChannel
+     * @param aWord
+     * @throws IOException
+     */
+    public void write(long aTimestampNanos, int aChannel, int aWord) throws IOException {
+        if(mPos > BUFFER_SIZE - MAX_RECORD_BYTES) {
+            flushBuffer();
+        }
+        if(aChannel != mChannel) {
+            putVarint(CODE_CHANNEL);
+            // Zig-zag in 32 bits, then zero-extend so the varint stays within 5 bytes.
+            putVarint(((aChannel << 1) ^ (aChannel >> 31)) & 0xffffffffL);
+            mChannel = aChannel;
+        }
+        int key = keyOf(aWord);
+        int index = mKeyIndex[key];
+        if(index < 0) {
+            mKeyIndex[key] = mNextIndex++;
+            putVarint(CODE_NEW_KEY);
+            putVarint(key);
+        } else {
+            putVarint(index + CODE_FIRST_INDEX);
+        }
+        long delta = aTimestampNanos - mTimestamp;
+        putVarint((delta << 1) ^ (delta >> 63));
+        mTimestamp = aTimestampNanos;
+
+        int label = aWord & ArincWord.LABEL_MASK;
+        int data = ArincWord.data(aWord);
+        putVarint(data ^ mLastData[label]);
+        mLastData[label] = data;
+        mRecords++;
+    }
+
+    public long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * @return Bytes produced so far, including anything still buffered.
+     */
+    public long getBytesWritten() {
+        return mFlushed + mPos;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            mOut.close();
+        }
+    }
+
+    /**
+     * Label, SDI, SSM and parity packed into 13 bits: the word's low 10 bits and
+     * its top 3 bits.
+     */
+    static int keyOf(int aWord) {
+        return (aWord & 0x3ff) | ((aWord >>> ArincWord.SSM_SHIFT) << 10);
+    }
+
+    static int wordOf(int aKey, int aData) {
+        return (aKey & 0x3ff) | (aData << ArincWord.DATA_SHIFT) | ((aKey >>> 10) << ArincWord.SSM_SHIFT);
+    }
+
+    private void putInt(int aValue) {
+        mBuffer[mPos++] = (byte)(aValue >>> 24);
+        mBuffer[mPos++] = (byte)(aValue >>> 16);
+        mBuffer[mPos++] = (byte)(aValue >>> 8);
+        mBuffer[mPos++] = (byte)aValue;
+    }
+
+    private void putVarint(long aValue) {
+        while((aValue & ~0x7fL) != 0) {
+            mBuffer[mPos++] = (byte)((aValue & 0x7f) | 0x80);
+            aValue >>>= 7;
+        }
+        mBuffer[mPos++] = (byte)aValue;
+    }
+
+    private void flushBuffer() throws IOException {
+        mOut.write(mBuffer, 0, mPos);
+        mFlushed += mPos;
+        mPos = 0;
+    }
+
+    private final OutputStream mOut;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mPos;
+    private long mFlushed;
+    private long mRecords;
+
+    private final int[] mKeyIndex = new int[KEY_COUNT];
+    private int mNextIndex;
+    private final int[] mLastData = new int[256];
+    private long mTimestamp;
+    private int mChannel;
+}
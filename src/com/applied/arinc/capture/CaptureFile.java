@@ -0,0 +1,225 @@
+package com.applied.arinc.capture;
+
+import com.applied.arinc.messages.ArincWord;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped view of a binary capture. Records are addressed by
+ * their index; nothing is read from disk until a record is touched, so even a
+ * multi-hour capture opens in the time it takes to map it and load its footer.
+ *
+ * Captures without a footer (recording cut short by power loss) are indexed on
+ * open by a single pass over the records, and a trailing partial record is
+ * ignored.
+ * @author James
+ */
+public class CaptureFile implements Closeable {
+    // Each mapping covers 1GB; records never straddle two since the header and
+    // the mapping size are both multiples of the record size.
+    private static final int MAP_SHIFT = 30;
+    private static final long MAP_SIZE = 1L << MAP_SHIFT;
+    private static final long MAP_MASK = MAP_SIZE - 1;
+
+    public static CaptureFile open(Path aFile) throws IOException {
+        try(FileChannel channel = FileChannel.open(aFile, StandardOpenOption.READ)) {
+            return new CaptureFile(channel);
+        }
+    }
+
+    private CaptureFile(FileChannel aChannel) throws IOException {
+        long size = aChannel.size();
+        ByteBuffer header = ByteBuffer.allocate(CaptureFormat.HEADER_SIZE).order(CaptureFormat.BYTE_ORDER);
+        while(header.hasRemaining() && aChannel.read(header, header.position()) > 0) {
+        }
+        header.flip();
+        CaptureFormat.checkHeader(header);
+
+        CaptureIndex index = readFooter(aChannel, size);
+        long recordBytes = index != null
+                ? index.getRecordCount() * CaptureFormat.RECORD_SIZE
+                : (size - CaptureFormat.HEADER_SIZE) / CaptureFormat.RECORD_SIZE * CaptureFormat.RECORD_SIZE;
+        long end = CaptureFormat.HEADER_SIZE + recordBytes;
+        mMaps = new MappedByteBuffer[(int)((end + MAP_SIZE - 1) >>> MAP_SHIFT)];
+        for(int i = 0; i < mMaps.length; i++) {
+            long start = (long)i << MAP_SHIFT;
+            mMaps[i] = aChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_SIZE, end - start));
+            mMaps[i].order(CaptureFormat.BYTE_ORDER);
+        }
+        mRecordCount = recordBytes / CaptureFormat.RECORD_SIZE;
+        mIndexed = index != null;
+        if(index == null) {
+            index = new CaptureIndex(CaptureIndex.DEFAULT_BLOCK_RECORDS);
+            for(long i = 0; i < mRecordCount; i++) {
+                index.add(getTimestamp(i), getWord(i));
+            }
+        }
+        mIndex = index;
+    }
+
+    /**
+     * Reads the index footer, if the file has a usable one.
+     * @return The index, or null if the footer is missing or damaged, in
+     *         which case the caller rebuilds it from the records.
+     * @throws IOException If the file could not be read.
+     */
+    static CaptureIndex readFooter(FileChannel aChannel, long aSize) throws IOException {
+        if(aSize < CaptureFormat.HEADER_SIZE + CaptureIndex.TRAILER_SIZE) {
+            return null;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(CaptureIndex.TRAILER_SIZE).order(CaptureFormat.BYTE_ORDER);
+        while(trailer.hasRemaining() &&
+              aChannel.read(trailer, aSize - CaptureIndex.TRAILER_SIZE + trailer.position()) > 0) {
+        }
+        if(trailer.hasRemaining()) {
+            return null;
+        }
+        long recordCount = trailer.getLong(0);
+        long footerOffset = trailer.getLong(8);
+        // Range check the count before multiplying so a garbage value cannot
+        // overflow into a matching offset.
+        if(trailer.getInt(20) != CaptureIndex.TRAILER_MAGIC ||
+           recordCount < 0 ||
+           recordCount > (aSize - CaptureFormat.HEADER_SIZE) / CaptureFormat.RECORD_SIZE ||
+           footerOffset != CaptureFormat.HEADER_SIZE + recordCount * CaptureFormat.RECORD_SIZE ||
+           footerOffset > aSize - CaptureIndex.TRAILER_SIZE ||
+           aSize - footerOffset > Integer.MAX_VALUE) {
+            return null;
+        }
+        ByteBuffer footer = aChannel.map(FileChannel.MapMode.READ_ONLY, footerOffset, aSize - footerOffset);
+        footer.order(CaptureFormat.BYTE_ORDER);
+        try {
+            return CaptureIndex.read(footer);
+        } catch(IOException e) {
+            return null;
+        }
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * @return True if the index came from the file's footer rather than a scan.
+     */
+    public boolean isIndexed() {
+        return mIndexed;
+    }
+
+    public CaptureIndex getIndex() {
+        return mIndex;
+    }
+
+    public long getTimestamp(long aRecord) {
+        long offset = offsetOf(aRecord) + CaptureFormat.TIMESTAMP_OFFSET;
+        return mMaps[(int)(offset >>> MAP_SHIFT)].getLong((int)(offset & MAP_MASK));
+    }
+
+    public int getChannel(long aRecord) {
+        long offset = offsetOf(aRecord) + CaptureFormat.CHANNEL_OFFSET;
+        return mMaps[(int)(offset >>> MAP_SHIFT)].getInt((int)(offset & MAP_MASK));
+    }
+
+    public int getWord(long aRecord) {
+        long offset = offsetOf(aRecord) + CaptureFormat.WORD_OFFSET;
+        return mMaps[(int)(offset >>> MAP_SHIFT)].getInt((int)(offset & MAP_MASK));
+    }
+
+    /**
+     * Finds the first record at or after aTimestampNanos, using the block index
+     * and then a binary search within the block.
+     * @param aTimestampNanos
+     * @return The record index, or getRecordCount() if every record is earlier.
+     */
+    public long seek(long aTimestampNanos) {
+        if(mRecordCount == 0) {
+            return 0;
+        }
+        long lo = (long)mIndex.findBlock(aTimestampNanos) * mIndex.getBlockRecords();
+        long hi = Math.min(lo + mIndex.getBlockRecords(), mRecordCount);
+        // Find the first record in [lo, hi) at or after the time; if there is
+        // none the answer is the start of the next block.
+        while(lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if(getTimestamp(mid) < aTimestampNanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Creates a cursor over the records of one label, starting at aFromRecord.
+     * Only blocks the index lists for the label are visited.
+     * @param aLabel
+     * @param aFromRecord
+     * @return
+     */
+    public LabelCursor labelCursor(int aLabel, long aFromRecord) {
+        return new LabelCursor(aLabel & ArincWord.LABEL_MASK, aFromRecord);
+    }
+
+    @Override
+    public void close() {
+        // Mappings are released when collected; nothing else is held open.
+    }
+
+    private static long offsetOf(long aRecord) {
+        return CaptureFormat.HEADER_SIZE + aRecord * CaptureFormat.RECORD_SIZE;
+    }
+
+    /**
+     * Iterates the records carrying a single label, in file order.
+     */
+    public class LabelCursor {
+        private LabelCursor(int aLabel, long aFromRecord) {
+            mLabel = aLabel;
+            mNext = aFromRecord;
+            // Skip straight to the first listed block that can contain aFromRecord.
+            int blocks = mIndex.getLabelBlockCount(aLabel);
+            long fromBlock = aFromRecord / mIndex.getBlockRecords();
+            while(mBlockIndex < blocks && mIndex.getLabelBlock(aLabel, mBlockIndex) < fromBlock) {
+                mBlockIndex++;
+            }
+        }
+
+        /**
+         * @return The index of the next record with this cursor's label, or -1
+         *         when there are no more.
+         */
+        public long next() {
+            int blocks = mIndex.getLabelBlockCount(mLabel);
+            int blockRecords = mIndex.getBlockRecords();
+            while(mBlockIndex < blocks) {
+                long blockStart = (long)mIndex.getLabelBlock(mLabel, mBlockIndex) * blockRecords;
+                long blockEnd = Math.min(blockStart + blockRecords, mRecordCount);
+                long record = Math.max(mNext, blockStart);
+                for(; record < blockEnd; record++) {
+                    if((getWord(record) & ArincWord.LABEL_MASK) == mLabel) {
+                        mNext = record + 1;
+                        return record;
+                    }
+                }
+                mNext = blockEnd;
+                mBlockIndex++;
+            }
+            return -1;
+        }
+
+        private final int mLabel;
+        private long mNext;
+        private int mBlockIndex;
+    }
+
+    private final MappedByteBuffer[] mMaps;
+    private final long mRecordCount;
+    private final boolean mIndexed;
+    private final CaptureIndex mIndex;
+}
@@ -0,0 +1,76 @@
+package com.applied.arinc.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of binary capture files. A capture is a 16 byte header followed by
+ * fixed size 16 byte records, all little endian:
+ *     Header - magic "A429" (4 bytes), version (int), record size (int), flags (int)
+ *     Record - timestamp in nanoseconds (long), channel (int), raw ARINC word (int)
+ * Timestamps are monotonic (System.nanoTime() based), not wall clock.
+ * @author James
+ */
+public final class CaptureFormat {
+    public static final int MAGIC = 0x39323441; // "A429" read little endian.
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 16;
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final int TIMESTAMP_OFFSET = 0;
+    public static final int CHANNEL_OFFSET = 8;
+    public static final int WORD_OFFSET = 12;
+
+    private CaptureFormat() {
+    }
+
+    /**
+     * Writes a header at aBuffer's position, advancing it.
+     * @param aBuffer Must be in BYTE_ORDER.
+     * @param aFlags
+     */
+    public static void putHeader(ByteBuffer aBuffer, int aFlags) {
+        aBuffer.putInt(MAGIC);
+        aBuffer.putInt(VERSION);
+        aBuffer.putInt(RECORD_SIZE);
+        aBuffer.putInt(aFlags);
+    }
+
+    /**
+     * Checks the header at aBuffer's position, advancing past it.
+     * @param aBuffer Must be in BYTE_ORDER.
+     * @return The header flags.
+     * @throws IOException If the header is not a supported capture header.
+     */
+    public static int checkHeader(ByteBuffer aBuffer) throws IOException {
+        if(aBuffer.remaining() < HEADER_SIZE) {
+            throw new IOException("Capture is shorter than its header.");
+        }
+        int magic = aBuffer.getInt();
+        int version = aBuffer.getInt();
+        int recordSize = aBuffer.getInt();
+        int flags = aBuffer.getInt();
+        if(magic != MAGIC) {
+            throw new IOException("Not an ARINC capture file.");
+        }
+        if(version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IOException("Unsupported capture version " + version + " with record size " + recordSize + ".");
+        }
+        return flags;
+    }
+
+    /**
+     * Writes one record at aBuffer's position, advancing it.
+     * @param aBuffer Must be in BYTE_ORDER.
+     * @param aTimestampNanos
+     * @param aChannel
+     * @param aWord
+     */
+    public static void putRecord(ByteBuffer aBuffer, long aTimestampNanos, int aChannel, int aWord) {
+        aBuffer.putLong(aTimestampNanos);
+        aBuffer.putInt(aChannel);
+        aBuffer.putInt(aWord);
+    }
+}
@@ -0,0 +1,223 @@
+package com.applied.arinc.capture;
+
+import com.applied.arinc.messages.ArincLabelTable;
+import com.applied.arinc.messages.ArincWord;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sparse index over the records of a capture. Records are grouped into fixed
+ * size blocks; the index keeps the first timestamp of every block (for seeking
+ * by time) and, per label, the list of blocks containing that label (for
+ * iterating one label without touching the rest of the file).
+ *
+ * Serialized into the footer of an indexed capture as:
+ *     long[blockCount]  first timestamp of each block
+ *     int               number of labels present
+ *     per label:        int label, long record count, int block count, int[] blocks
+ *     trailer:          long record count, long footer offset, int block size, int TRAILER_MAGIC
+ * @author James
+ */
+public class CaptureIndex {
+    public static final int DEFAULT_BLOCK_RECORDS = 256;
+    public static final int TRAILER_MAGIC = 0x58493441; // "A4IX" read little endian.
+    public static final int TRAILER_SIZE = 24;
+
+    public CaptureIndex(int aBlockRecords) {
+        mBlockRecords = aBlockRecords;
+        mBlockTimestamps = new long[64];
+        Arrays.fill(mLastBlock, -1);
+    }
+
+    /**
+     * Adds the next record to the index. Records must be added in file order.
+     * @param aTimestampNanos
+     * @param aWord
+     */
+    public void add(long aTimestampNanos, int aWord) {
+        int block = (int)(mRecordCount / mBlockRecords);
+        if(mRecordCount % mBlockRecords == 0) {
+            if(block == mBlockTimestamps.length) {
+                mBlockTimestamps = Arrays.copyOf(mBlockTimestamps, block * 2);
+            }
+            mBlockTimestamps[block] = aTimestampNanos;
+        }
+        int label = aWord & ArincWord.LABEL_MASK;
+        mLabelCounts[label]++;
+        if(mLastBlock[label] != block) {
+            mLastBlock[label] = block;
+            int[] blocks = mLabelBlocks[label];
+            int n = mLabelBlockCounts[label];
+            if(blocks == null) {
+                blocks = mLabelBlocks[label] = new int[16];
+            } else if(n == blocks.length) {
+                blocks = mLabelBlocks[label] = Arrays.copyOf(blocks, n * 2);
+            }
+            blocks[n] = block;
+            mLabelBlockCounts[label] = n + 1;
+        }
+        mRecordCount++;
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    public int getBlockRecords() {
+        return mBlockRecords;
+    }
+
+    public int getBlockCount() {
+        return (int)((mRecordCount + mBlockRecords - 1) / mBlockRecords);
+    }
+
+    public long getBlockTimestamp(int aBlock) {
+        return mBlockTimestamps[aBlock];
+    }
+
+    public long getLabelCount(int aLabel) {
+        return mLabelCounts[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    public int getLabelBlockCount(int aLabel) {
+        return mLabelBlockCounts[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    public int getLabelBlock(int aLabel, int aIndex) {
+        return mLabelBlocks[aLabel & ArincWord.LABEL_MASK][aIndex];
+    }
+
+    /**
+     * Finds the last block whose first timestamp is at or before aTimestampNanos.
+     * @param aTimestampNanos
+     * @return The block number, or 0 if every block starts later.
+     */
+    public int findBlock(long aTimestampNanos) {
+        int lo = 0;
+        int hi = getBlockCount() - 1;
+        while(lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if(mBlockTimestamps[mid] <= aTimestampNanos) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return The number of bytes write() will produce, trailer included.
+     */
+    public int getSerializedSize() {
+        int size = getBlockCount() * 8 + 4;
+        for(int label = 0; label < ArincLabelTable.LABEL_COUNT; label++) {
+            if(mLabelCounts[label] != 0) {
+                size += 16 + mLabelBlockCounts[label] * 4;
+            }
+        }
+        return size + TRAILER_SIZE;
+    }
+
+    /**
+     * Serializes the index and trailer at aBuffer's position.
+     * @param aBuffer Must be in CaptureFormat.BYTE_ORDER.
+     * @param aFooterOffset File offset the footer is being written at.
+     */
+    public void write(ByteBuffer aBuffer, long aFooterOffset) {
+        int blockCount = getBlockCount();
+        for(int i = 0; i < blockCount; i++) {
+            aBuffer.putLong(mBlockTimestamps[i]);
+        }
+        int labels = 0;
+        for(int label = 0; label < ArincLabelTable.LABEL_COUNT; label++) {
+            if(mLabelCounts[label] != 0) {
+                labels++;
+            }
+        }
+        aBuffer.putInt(labels);
+        for(int label = 0; label < ArincLabelTable.LABEL_COUNT; label++) {
+            if(mLabelCounts[label] == 0) {
+                continue;
+            }
+            aBuffer.putInt(label);
+            aBuffer.putLong(mLabelCounts[label]);
+            aBuffer.putInt(mLabelBlockCounts[label]);
+            for(int i = 0; i < mLabelBlockCounts[label]; i++) {
+                aBuffer.putInt(mLabelBlocks[label][i]);
+            }
+        }
+        aBuffer.putLong(mRecordCount);
+        aBuffer.putLong(aFooterOffset);
+        aBuffer.putInt(mBlockRecords);
+        aBuffer.putInt(TRAILER_MAGIC);
+    }
+
+    /**
+     * Reads an index serialized by write(). Every count is checked against
+     * the bytes actually present, so a damaged footer is reported as an
+     * IOException rather than a runtime exception.
+     * @param aFooter The footer, positioned at its start and limited to its end
+     *                (trailer included), in CaptureFormat.BYTE_ORDER.
+     * @return
+     * @throws IOException If the footer is inconsistent.
+     */
+    public static CaptureIndex read(ByteBuffer aFooter) throws IOException {
+        int trailer = aFooter.limit() - TRAILER_SIZE;
+        if(trailer < aFooter.position() + 4) {
+            throw new IOException("Capture index is too short.");
+        }
+        long recordCount = aFooter.getLong(trailer);
+        int blockRecords = aFooter.getInt(trailer + 16);
+        if(aFooter.getInt(trailer + 20) != TRAILER_MAGIC || blockRecords <= 0 || recordCount < 0) {
+            throw new IOException("Capture index trailer is corrupt.");
+        }
+        long blockCount = (recordCount + blockRecords - 1) / blockRecords;
+        if(blockCount > (trailer - aFooter.position() - 4) / 8) {
+            throw new IOException("Capture index block count exceeds the footer.");
+        }
+        CaptureIndex index = new CaptureIndex(blockRecords);
+        index.mRecordCount = recordCount;
+        index.mBlockTimestamps = new long[Math.max((int)blockCount, 1)];
+        for(int i = 0; i < blockCount; i++) {
+            index.mBlockTimestamps[i] = aFooter.getLong();
+        }
+        int labels = aFooter.getInt();
+        if(labels < 0 || labels > ArincLabelTable.LABEL_COUNT) {
+            throw new IOException("Capture index label count " + labels + " is out of range.");
+        }
+        for(int i = 0; i < labels; i++) {
+            if(trailer - aFooter.position() < 16) {
+                throw new IOException("Capture index label table exceeds the footer.");
+            }
+            int label = aFooter.getInt() & ArincWord.LABEL_MASK;
+            index.mLabelCounts[label] = aFooter.getLong();
+            int blocks = aFooter.getInt();
+            if(blocks < 0 || blocks > blockCount || blocks > (trailer - aFooter.position()) / 4) {
+                throw new IOException("Capture index block list for label " + label + " is corrupt.");
+            }
+            index.mLabelBlockCounts[label] = blocks;
+            index.mLabelBlocks[label] = new int[blocks];
+            for(int b = 0; b < blocks; b++) {
+                int block = aFooter.getInt();
+                if(block < 0 || block >= blockCount) {
+                    throw new IOException("Capture index refers to block " + block + " of " + blockCount + ".");
+                }
+                index.mLabelBlocks[label][b] = block;
+            }
+        }
+        if(aFooter.position() != trailer) {
+            throw new IOException("Capture index length does not match its trailer.");
+        }
+        return index;
+    }
+
+    private final int mBlockRecords;
+    private long mRecordCount;
+    private long[] mBlockTimestamps;
+    private final long[] mLabelCounts = new long[ArincLabelTable.LABEL_COUNT];
+    private final int[][] mLabelBlocks = new int[ArincLabelTable.LABEL_COUNT][];
+    private final int[] mLabelBlockCounts = new int[ArincLabelTable.LABEL_COUNT];
+    private final int[] mLastBlock = new int[ArincLabelTable.LABEL_COUNT];
+}
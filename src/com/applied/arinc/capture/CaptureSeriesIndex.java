@@ -0,0 +1,475 @@
+package com.applied.arinc.capture;
+
+import com.applied.arinc.ArincRouter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Time-series index over a capture: for every (label, SDI) pair, the record
+ * numbers and timestamps of that pair's words, in file order. Questions such as
+ * "every 0173 word between t1 and t2" become two binary searches over one
+ * series, with no scan of the capture and nothing decoded along the way.
+ *
+ * Each series is cut into blocks of up to 256 words. A block keeps the full
+ * record number and timestamp of its first word, and every word stores both as
+ * unsigned 32-bit offsets from those, so the index costs about 8 bytes per word
+ * against the capture's 16. A block ends early if an offset would not fit,
+ * which only happens across gaps of more than about 4 seconds.
+ *
+ * The index lives in a side file next to the capture (see pathFor()), written
+ * once and memory-mapped afterwards, little endian:
+ *     Header    - magic "A4TS" (int), version (int), capture record count (long),
+ *                 last capture timestamp (long), series count (int), reserved (int)
+ *     Directory - per series: key (int), word count (int), block count (int),
+ *                 reserved (int)
+ *     Data      - per series, in directory order: long[blocks] base record
+ *                 numbers, long[blocks] base timestamps, int[blocks] first
+ *                 position of each block, int[count] record offsets,
+ *                 int[count] timestamp offsets, zero padded to 8 bytes
+ * A series key is ArincRouter.routeOf(label, SDI), the word's low 10 bits.
+ * @author James
+ */
+public class CaptureSeriesIndex {
+    public static final int MAGIC = 0x53543441; // "A4TS" read little endian.
+    public static final int VERSION = 2;
+    public static final int SERIES_COUNT = ArincRouter.ROUTE_COUNT;
+    public static final String SUFFIX = ".a4ts";
+
+    private static final int HEADER_SIZE = 32;
+    private static final int DIRECTORY_ENTRY_SIZE = 16;
+    private static final int BLOCK_WORDS = 256;
+    private static final long OFFSET_LIMIT = 0xffffffffL;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * @param aCapture
+     * @return Where the index for aCapture is kept.
+     */
+    public static Path pathFor(Path aCapture) {
+        return aCapture.resolveSibling(aCapture.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Opens the index next to aFile, building and writing it first if it is
+     * missing, unreadable or does not match the capture.
+     * @param aFile The capture's path.
+     * @param aCapture The capture, already open.
+     * @return
+     * @throws IOException
+     */
+    public static CaptureSeriesIndex openOrBuild(Path aFile, CaptureFile aCapture) throws IOException {
+        Path path = pathFor(aFile);
+        if(Files.exists(path)) {
+            try {
+                CaptureSeriesIndex index = open(path);
+                if(index.matches(aCapture)) {
+                    return index;
+                }
+            } catch(IOException e) {
+                // Left over from an old version or a failed write; rebuild it.
+            }
+        }
+        CaptureSeriesIndex index = build(aCapture);
+        index.write(path);
+        return index;
+    }
+
+    /**
+     * Builds an index in memory with two passes over the capture: one to size
+     * each series exactly, one to fill them.
+     * @param aCapture
+     * @return
+     */
+    public static CaptureSeriesIndex build(CaptureFile aCapture) {
+        long records = aCapture.getRecordCount();
+        int[] counts = new int[SERIES_COUNT];
+        for(long i = 0; i < records; i++) {
+            counts[aCapture.getWord(i) & (SERIES_COUNT - 1)]++;
+        }
+        SeriesBuilder[] builders = new SeriesBuilder[SERIES_COUNT];
+        for(int key = 0; key < SERIES_COUNT; key++) {
+            if(counts[key] != 0) {
+                builders[key] = new SeriesBuilder(counts[key]);
+            }
+        }
+        for(long i = 0; i < records; i++) {
+            builders[aCapture.getWord(i) & (SERIES_COUNT - 1)].add(i, aCapture.getTimestamp(i));
+        }
+
+        CaptureSeriesIndex index = new CaptureSeriesIndex(records,
+                records == 0 ? 0 : aCapture.getTimestamp(records - 1));
+        for(int key = 0; key < SERIES_COUNT; key++) {
+            if(builders[key] != null) {
+                index.mSeries[key] = builders[key].finish();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Maps an index written by write().
+     * @param aPath
+     * @return
+     * @throws IOException If the file is not a valid index.
+     */
+    public static CaptureSeriesIndex open(Path aPath) throws IOException {
+        try(FileChannel channel = FileChannel.open(aPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size < HEADER_SIZE) {
+                throw new IOException("Series index is shorter than its header.");
+            }
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException("Series index is larger than one mapping.");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(CaptureFormat.BYTE_ORDER);
+            if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException("Not a supported series index.");
+            }
+            CaptureSeriesIndex index = new CaptureSeriesIndex(map.getLong(8), map.getLong(16));
+            int series = map.getInt(24);
+            if(series < 0 || series > SERIES_COUNT || HEADER_SIZE + (long)series * DIRECTORY_ENTRY_SIZE > size) {
+                throw new IOException("Series index directory is truncated.");
+            }
+            long data = HEADER_SIZE + (long)series * DIRECTORY_ENTRY_SIZE;
+            for(int i = 0; i < series; i++) {
+                int entry = HEADER_SIZE + i * DIRECTORY_ENTRY_SIZE;
+                int key = map.getInt(entry) & (SERIES_COUNT - 1);
+                int count = map.getInt(entry + 4);
+                int blocks = map.getInt(entry + 8);
+                if(count <= 0 || blocks <= 0 || blocks > count || data + seriesBytes(count, blocks) > size) {
+                    throw new IOException("Series index is truncated.");
+                }
+                long offset = data;
+                LongBuffer recordBases = sliceLongs(map, offset, blocks);
+                offset += (long)blocks * 8;
+                LongBuffer timestampBases = sliceLongs(map, offset, blocks);
+                offset += (long)blocks * 8;
+                IntBuffer blockStarts = sliceInts(map, offset, blocks);
+                offset += (long)blocks * 4;
+                IntBuffer recordOffsets = sliceInts(map, offset, count);
+                offset += (long)count * 4;
+                IntBuffer timestampOffsets = sliceInts(map, offset, count);
+                index.mSeries[key] = new Series(count, blocks, recordBases, timestampBases,
+                        blockStarts, recordOffsets, timestampOffsets);
+                data += seriesBytes(count, blocks);
+            }
+            return index;
+        }
+    }
+
+    private static long seriesBytes(int aCount, int aBlocks) {
+        long bytes = (long)aBlocks * 20 + (long)aCount * 8;
+        return (bytes + 7) & ~7L;
+    }
+
+    private static LongBuffer sliceLongs(MappedByteBuffer aMap, long aOffset, int aCount) {
+        return slice(aMap, aOffset, aCount * 8).asLongBuffer();
+    }
+
+    private static IntBuffer sliceInts(MappedByteBuffer aMap, long aOffset, int aCount) {
+        return slice(aMap, aOffset, aCount * 4).asIntBuffer();
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer aMap, long aOffset, int aBytes) {
+        ByteBuffer view = aMap.duplicate();
+        view.position((int)aOffset);
+        view.limit((int)aOffset + aBytes);
+        return view.slice().order(CaptureFormat.BYTE_ORDER);
+    }
+
+    private CaptureSeriesIndex(long aCaptureRecords, long aLastTimestamp) {
+        mCaptureRecords = aCaptureRecords;
+        mLastTimestamp = aLastTimestamp;
+    }
+
+    /**
+     * @param aCapture
+     * @return True if this index was built from aCapture as it is now.
+     */
+    public boolean matches(CaptureFile aCapture) {
+        long records = aCapture.getRecordCount();
+        return records == mCaptureRecords &&
+               (records == 0 || aCapture.getTimestamp(records - 1) == mLastTimestamp);
+    }
+
+    /**
+     * Writes the index to aPath, replacing any existing file. The index is
+     * written to a temporary file first and moved into place, so a crash
+     * leaves either the old index or the new one, never a torn file.
+     * @param aPath
+     * @throws IOException
+     */
+    public void write(Path aPath) throws IOException {
+        Path temp = aPath.resolveSibling(aPath.getFileName() + ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeTo(channel);
+                channel.force(true);
+            }
+            Files.move(temp, aPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeTo(FileChannel aChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(CaptureFormat.BYTE_ORDER);
+        int series = 0;
+        for(int key = 0; key < SERIES_COUNT; key++) {
+            if(mSeries[key] != null) {
+                series++;
+            }
+        }
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(mCaptureRecords);
+        buffer.putLong(mLastTimestamp);
+        buffer.putInt(series);
+        buffer.putInt(0);
+        for(int key = 0; key < SERIES_COUNT; key++) {
+            Series s = mSeries[key];
+            if(s != null) {
+                if(buffer.remaining() < DIRECTORY_ENTRY_SIZE) {
+                    drain(aChannel, buffer);
+                }
+                buffer.putInt(key);
+                buffer.putInt(s.mCount);
+                buffer.putInt(s.mBlocks);
+                buffer.putInt(0);
+            }
+        }
+        for(int key = 0; key < SERIES_COUNT; key++) {
+            Series s = mSeries[key];
+            if(s != null) {
+                for(int i = 0; i < s.mBlocks; i++) {
+                    putLong(aChannel, buffer, s.mRecordBases.get(i));
+                }
+                for(int i = 0; i < s.mBlocks; i++) {
+                    putLong(aChannel, buffer, s.mTimestampBases.get(i));
+                }
+                putInts(aChannel, buffer, s.mBlockStarts, s.mBlocks);
+                putInts(aChannel, buffer, s.mRecordOffsets, s.mCount);
+                putInts(aChannel, buffer, s.mTimestampOffsets, s.mCount);
+                if(((s.mBlocks + s.mCount * 2) & 1) != 0) {
+                    putInts(aChannel, buffer, IntBuffer.wrap(new int[1]), 1);
+                }
+            }
+        }
+        drain(aChannel, buffer);
+    }
+
+    private static void putLong(FileChannel aChannel, ByteBuffer aBuffer, long aValue) throws IOException {
+        if(aBuffer.remaining() < 8) {
+            drain(aChannel, aBuffer);
+        }
+        aBuffer.putLong(aValue);
+    }
+
+    private static void putInts(FileChannel aChannel, ByteBuffer aBuffer, IntBuffer aValues, int aCount) throws IOException {
+        for(int i = 0; i < aCount; i++) {
+            if(aBuffer.remaining() < 4) {
+                drain(aChannel, aBuffer);
+            }
+            aBuffer.putInt(aValues.get(i));
+        }
+    }
+
+    private static void drain(FileChannel aChannel, ByteBuffer aBuffer) throws IOException {
+        aBuffer.flip();
+        while(aBuffer.hasRemaining()) {
+            aChannel.write(aBuffer);
+        }
+        aBuffer.clear();
+    }
+
+    /**
+     * @param aLabel
+     * @param aSdi
+     * @return How many words the capture holds for this label and SDI.
+     */
+    public int getCount(int aLabel, int aSdi) {
+        Series series = mSeries[ArincRouter.routeOf(aLabel, aSdi)];
+        return series == null ? 0 : series.mCount;
+    }
+
+    /**
+     * @param aLabel
+     * @param aSdi
+     * @param aIndex Position within the series, 0 to getCount() - 1.
+     * @return The capture record number, for CaptureFile.getWord() and friends.
+     */
+    public long getRecord(int aLabel, int aSdi, int aIndex) {
+        return mSeries[ArincRouter.routeOf(aLabel, aSdi)].record(aIndex);
+    }
+
+    public long getTimestamp(int aLabel, int aSdi, int aIndex) {
+        return mSeries[ArincRouter.routeOf(aLabel, aSdi)].timestamp(aIndex);
+    }
+
+    /**
+     * @param aLabel
+     * @param aSdi
+     * @param aTimestampNanos
+     * @return The first position in the series at or after aTimestampNanos, or
+     *         getCount() if there is none.
+     */
+    public int lowerBound(int aLabel, int aSdi, long aTimestampNanos) {
+        Series series = mSeries[ArincRouter.routeOf(aLabel, aSdi)];
+        if(series == null) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = series.mCount;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(series.timestamp(mid) < aTimestampNanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param aLabel
+     * @param aSdi
+     * @param aTimestampNanos
+     * @return The first position in the series after aTimestampNanos, or
+     *         getCount() if there is none.
+     */
+    public int upperBound(int aLabel, int aSdi, long aTimestampNanos) {
+        return aTimestampNanos == Long.MAX_VALUE
+                ? getCount(aLabel, aSdi)
+                : lowerBound(aLabel, aSdi, aTimestampNanos + 1);
+    }
+
+    public long getCaptureRecordCount() {
+        return mCaptureRecords;
+    }
+
+    /**
+     * One (label, SDI) series, either built in memory or mapped from a file.
+     */
+    private static class Series {
+        Series(int aCount, int aBlocks, LongBuffer aRecordBases, LongBuffer aTimestampBases,
+               IntBuffer aBlockStarts, IntBuffer aRecordOffsets, IntBuffer aTimestampOffsets) {
+            mCount = aCount;
+            mBlocks = aBlocks;
+            mRecordBases = aRecordBases;
+            mTimestampBases = aTimestampBases;
+            mBlockStarts = aBlockStarts;
+            mRecordOffsets = aRecordOffsets;
+            mTimestampOffsets = aTimestampOffsets;
+        }
+
+        long record(int aIndex) {
+            return mRecordBases.get(blockOf(aIndex)) + (mRecordOffsets.get(aIndex) & OFFSET_LIMIT);
+        }
+
+        long timestamp(int aIndex) {
+            return mTimestampBases.get(blockOf(aIndex)) + (mTimestampOffsets.get(aIndex) & OFFSET_LIMIT);
+        }
+
+        /**
+         * @return The last block starting at or before aIndex.
+         */
+        private int blockOf(int aIndex) {
+            if(aIndex < 0 || aIndex >= mCount) {
+                throw new IndexOutOfBoundsException("Series position " + aIndex + " of " + mCount + ".");
+            }
+            int lo = 0;
+            int hi = mBlocks - 1;
+            while(lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if(mBlockStarts.get(mid) <= aIndex) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+
+        final int mCount;
+        final int mBlocks;
+        final LongBuffer mRecordBases;
+        final LongBuffer mTimestampBases;
+        final IntBuffer mBlockStarts;
+        final IntBuffer mRecordOffsets;
+        final IntBuffer mTimestampOffsets;
+    }
+
+    /**
+     * Cuts a series into blocks as its words are added in file order.
+     */
+    private static class SeriesBuilder {
+        SeriesBuilder(int aCount) {
+            mRecordOffsets = new int[aCount];
+            mTimestampOffsets = new int[aCount];
+            int blocks = (aCount + BLOCK_WORDS - 1) / BLOCK_WORDS;
+            mRecordBases = new long[blocks];
+            mTimestampBases = new long[blocks];
+            mBlockStarts = new int[blocks];
+        }
+
+        void add(long aRecord, long aTimestamp) {
+            int n = mCount;
+            long recordOffset = aRecord - mRecordBase;
+            long timestampOffset = aTimestamp - mTimestampBase;
+            if(mBlocks == 0 || n - mBlockStarts[mBlocks - 1] >= BLOCK_WORDS ||
+                    recordOffset > OFFSET_LIMIT || timestampOffset < 0 || timestampOffset > OFFSET_LIMIT) {
+                if(mBlocks == mBlockStarts.length) {
+                    int grown = mBlocks * 2;
+                    mRecordBases = Arrays.copyOf(mRecordBases, grown);
+                    mTimestampBases = Arrays.copyOf(mTimestampBases, grown);
+                    mBlockStarts = Arrays.copyOf(mBlockStarts, grown);
+                }
+                mRecordBase = aRecord;
+                mTimestampBase = aTimestamp;
+                mRecordBases[mBlocks] = aRecord;
+                mTimestampBases[mBlocks] = aTimestamp;
+                mBlockStarts[mBlocks] = n;
+                mBlocks++;
+                recordOffset = 0;
+                timestampOffset = 0;
+            }
+            mRecordOffsets[n] = (int)recordOffset;
+            mTimestampOffsets[n] = (int)timestampOffset;
+            mCount = n + 1;
+        }
+
+        Series finish() {
+            return new Series(mCount, mBlocks,
+                    LongBuffer.wrap(mRecordBases, 0, mBlocks).slice(),
+                    LongBuffer.wrap(mTimestampBases, 0, mBlocks).slice(),
+                    IntBuffer.wrap(mBlockStarts, 0, mBlocks).slice(),
+                    IntBuffer.wrap(mRecordOffsets), IntBuffer.wrap(mTimestampOffsets));
+        }
+
+        private final int[] mRecordOffsets;
+        private final int[] mTimestampOffsets;
+        private long[] mRecordBases;
+        private long[] mTimestampBases;
+        private int[] mBlockStarts;
+        private long mRecordBase;
+        private long mTimestampBase;
+        private int mBlocks;
+        private int mCount;
+    }
+
+    private final long mCaptureRecords;
+    private final long mLastTimestamp;
+    private final Series[] mSeries = new Series[SERIES_COUNT];
+}
@@ -0,0 +1,26 @@
+package com.applied.arinc.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination for capture records written by an ArincRecorder. Only ever called
+ * from the recorder's writer thread.
+ * @author James
+ */
+public interface CaptureSink extends Closeable {
+    /**
+     * Writes all remaining bytes of aRecords, which holds whole records in
+     * CaptureFormat layout.
+     * @param aRecords
+     * @throws IOException 
+     */
+    public void write(ByteBuffer aRecords) throws IOException;
+    
+    /**
+     * Forces everything written so far to stable storage.
+     * @throws IOException 
+     */
+    public void sync() throws IOException;
+}
@@ -0,0 +1,247 @@
+package com.applied.arinc.capture;
+
+import com.applied.arinc.messages.ArincBnr;
+import com.applied.arinc.messages.ArincLabelTable;
+import com.applied.arinc.messages.ArincParity;
+import com.applied.arinc.messages.ArincWord;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Post-flight statistics over a whole capture, per label: word counts, SSM
+ * breakdown, parity failures, BNR value range and a histogram of the intervals
+ * between successive words (the label's update rate).
+ *
+ * analyze() splits the mapped capture into chunks and runs them on a
+ * ForkJoinPool. Each chunk fills its own CaptureStatistics, which are plain
+ * primitive arrays, and results are merged pairwise as the tasks join. Merging
+ * keeps file order, so intervals spanning two chunks are counted too and the
+ * result is identical to a single-threaded pass. Chunks share nothing while
+ * running, so throughput scales with cores until the disk becomes the limit.
+ * @author James
+ */
+public class CaptureStatistics {
+    /**
+     * Interval histograms use power of two buckets: bucket b counts intervals
+     * from 2^(b-1) to 2^b - 1 nanoseconds, with bucket 0 holding zero (or
+     * negative) intervals.
+     */
+    public static final int HISTOGRAM_BUCKETS = 64;
+
+    private static final int LABELS = ArincLabelTable.LABEL_COUNT;
+    private static final int SSM_COUNT = ArincWord.SSM_MASK + 1;
+    private static final long MIN_CHUNK_RECORDS = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    public CaptureStatistics() {
+        Arrays.fill(mMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(mMax, Double.NEGATIVE_INFINITY);
+    }
+
+    public static CaptureStatistics analyze(CaptureFile aCapture) {
+        return analyze(aCapture, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param aCapture
+     * @param aPool The pool to run on; its parallelism sets the chunk size.
+     * @return Statistics for every record in aCapture.
+     */
+    public static CaptureStatistics analyze(CaptureFile aCapture, ForkJoinPool aPool) {
+        long records = aCapture.getRecordCount();
+        long chunk = Math.max(MIN_CHUNK_RECORDS, records / ((long)aPool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+        return aPool.invoke(new Task(aCapture, 0, records, chunk));
+    }
+
+    /**
+     * Adds one record. Records must be added in file order.
+     * @param aTimestampNanos
+     * @param aWord
+     */
+    public void add(long aTimestampNanos, int aWord) {
+        int label = ArincWord.label(aWord);
+        long count = mCounts[label]++;
+        if(count == 0) {
+            mFirst[label] = aTimestampNanos;
+        } else {
+            mHistogram[label * HISTOGRAM_BUCKETS + bucketOf(aTimestampNanos - mLast[label])]++;
+        }
+        mLast[label] = aTimestampNanos;
+        mSsmCounts[label * SSM_COUNT + ArincWord.ssm(aWord)]++;
+        if(!ArincParity.isValid(aWord)) {
+            mParityErrors[label]++;
+        }
+        double value = ArincBnr.decode(aWord);
+        // NaN (no BNR scaling) fails both tests and leaves the range alone.
+        if(value < mMin[label]) {
+            mMin[label] = value;
+        }
+        if(value > mMax[label]) {
+            mMax[label] = value;
+        }
+    }
+
+    /**
+     * Folds in statistics for the records immediately following this one's.
+     * @param aLater
+     */
+    public void merge(CaptureStatistics aLater) {
+        for(int label = 0; label < LABELS; label++) {
+            long later = aLater.mCounts[label];
+            if(later == 0) {
+                continue;
+            }
+            if(mCounts[label] == 0) {
+                mFirst[label] = aLater.mFirst[label];
+            } else {
+                mHistogram[label * HISTOGRAM_BUCKETS + bucketOf(aLater.mFirst[label] - mLast[label])]++;
+            }
+            mLast[label] = aLater.mLast[label];
+            mCounts[label] += later;
+            mParityErrors[label] += aLater.mParityErrors[label];
+            mMin[label] = Math.min(mMin[label], aLater.mMin[label]);
+            mMax[label] = Math.max(mMax[label], aLater.mMax[label]);
+        }
+        for(int i = 0; i < mSsmCounts.length; i++) {
+            mSsmCounts[i] += aLater.mSsmCounts[i];
+        }
+        for(int i = 0; i < mHistogram.length; i++) {
+            mHistogram[i] += aLater.mHistogram[i];
+        }
+    }
+
+    public long getWordCount(int aLabel) {
+        return mCounts[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    public long getTotalWordCount() {
+        long total = 0;
+        for(long count : mCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getSsmCount(int aLabel, int aSsm) {
+        return mSsmCounts[(aLabel & ArincWord.LABEL_MASK) * SSM_COUNT + (aSsm & ArincWord.SSM_MASK)];
+    }
+
+    public long getParityErrorCount(int aLabel) {
+        return mParityErrors[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    /**
+     * @param aLabel
+     * @return The fraction of the label's words with bad parity, or NaN if it
+     *         never appeared.
+     */
+    public double getParityErrorRate(int aLabel) {
+        int label = aLabel & ArincWord.LABEL_MASK;
+        return mCounts[label] == 0 ? Double.NaN : (double)mParityErrors[label] / mCounts[label];
+    }
+
+    /**
+     * @param aLabel
+     * @return The smallest BNR value seen, or NaN if the label has no BNR
+     *         scaling or never appeared.
+     */
+    public double getMin(int aLabel) {
+        double min = mMin[aLabel & ArincWord.LABEL_MASK];
+        return min == Double.POSITIVE_INFINITY ? Double.NaN : min;
+    }
+
+    /**
+     * @param aLabel
+     * @return The largest BNR value seen, or NaN if the label has no BNR
+     *         scaling or never appeared.
+     */
+    public double getMax(int aLabel) {
+        double max = mMax[aLabel & ArincWord.LABEL_MASK];
+        return max == Double.NEGATIVE_INFINITY ? Double.NaN : max;
+    }
+
+    public long getFirstTimestamp(int aLabel) {
+        return mFirst[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    public long getLastTimestamp(int aLabel) {
+        return mLast[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    /**
+     * @param aLabel
+     * @return The label's mean update rate in Hz, or NaN with fewer than two
+     *         words.
+     */
+    public double getRateHz(int aLabel) {
+        int label = aLabel & ArincWord.LABEL_MASK;
+        long span = mLast[label] - mFirst[label];
+        return mCounts[label] < 2 || span <= 0 ? Double.NaN : (mCounts[label] - 1) * 1e9 / span;
+    }
+
+    /**
+     * @param aLabel
+     * @param aBucket 0 to HISTOGRAM_BUCKETS - 1.
+     * @return How many intervals between successive words of the label fell in
+     *         the bucket.
+     */
+    public long getIntervalCount(int aLabel, int aBucket) {
+        return mHistogram[(aLabel & ArincWord.LABEL_MASK) * HISTOGRAM_BUCKETS + aBucket];
+    }
+
+    /**
+     * @param aBucket
+     * @return The shortest interval, in nanoseconds, counted in aBucket.
+     */
+    public static long getBucketLowerNanos(int aBucket) {
+        return aBucket == 0 ? 0 : 1L << (aBucket - 1);
+    }
+
+    private static int bucketOf(long aIntervalNanos) {
+        return aIntervalNanos <= 0 ? 0 : Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(aIntervalNanos));
+    }
+
+    private static class Task extends RecursiveTask<CaptureStatistics> {
+        private static final long serialVersionUID = 1L;
+
+        Task(CaptureFile aCapture, long aFrom, long aTo, long aChunk) {
+            mCapture = aCapture;
+            mFrom = aFrom;
+            mTo = aTo;
+            mChunk = aChunk;
+        }
+
+        @Override
+        protected CaptureStatistics compute() {
+            if(mTo - mFrom <= mChunk) {
+                CaptureStatistics stats = new CaptureStatistics();
+                for(long i = mFrom; i < mTo; i++) {
+                    stats.add(mCapture.getTimestamp(i), mCapture.getWord(i));
+                }
+                return stats;
+            }
+            long mid = (mFrom + mTo) >>> 1;
+            Task left = new Task(mCapture, mFrom, mid, mChunk);
+            Task right = new Task(mCapture, mid, mTo, mChunk);
+            right.fork();
+            CaptureStatistics stats = left.compute();
+            stats.merge(right.join());
+            return stats;
+        }
+
+        private final CaptureFile mCapture;
+        private final long mFrom;
+        private final long mTo;
+        private final long mChunk;
+    }
+
+    private final long[] mCounts = new long[LABELS];
+    private final long[] mFirst = new long[LABELS];
+    private final long[] mLast = new long[LABELS];
+    private final long[] mSsmCounts = new long[LABELS * SSM_COUNT];
+    private final long[] mParityErrors = new long[LABELS];
+    private final double[] mMin = new double[LABELS];
+    private final double[] mMax = new double[LABELS];
+    private final long[] mHistogram = new long[LABELS * HISTOGRAM_BUCKETS];
+}
@@ -0,0 +1,288 @@
+package com.applied.arinc.capture;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts legacy text captures (deiLog.log style, one hex word per line as
+ * written by Integer.toHexString()) to binary captures and back.
+ *
+ * Text files are parsed by HexCaptureReader straight from a mapping. Lines that
+ * are not hex are skipped. Leading zeros were never written, so a line with
+ * fewer than 8 digits is usually a perfectly good word; but one with 3 or fewer,
+ * such as the "27c" entries in deiLog.log, holds nothing past the label and SDI
+ * and is most likely cut off. Those are imported as read but flagged. Both kinds
+ * are listed in a side report, <capture>.report, which is only written when
+ * there is something to report. Nothing in a file aborts its import.
+ *
+ * Text captures have no timestamps, so imported records are stamped at the
+ * nominal 100 kbps spacing of one word per 36 bit times, starting from 0.
+ *
+ * Usage: CaptureTextConverter import <out dir> <text files...>
+ *        CaptureTextConverter export <out dir> <capture files...>
+ * @author James
+ */
+public final class CaptureTextConverter {
+    public static final String REPORT_SUFFIX = ".report";
+    public static final long WORD_NANOS = 360000;
+    /**
+     * Channel imported words are recorded on: receiver 1, where the legacy
+     * logger read from.
+     */
+    public static final int TEXT_CHANNEL = 1;
+
+    /**
+     * Lines with this many digits or fewer carry no data, SSM or parity.
+     */
+    public static final int SHORT_DIGITS = 3;
+
+    private static final int BATCH_RECORDS = 4096;
+    private static final int TEXT_BUFFER_SIZE = 1 << 20;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private CaptureTextConverter() {
+    }
+
+    /**
+     * Converts one text capture into an indexed binary capture.
+     * @param aText
+     * @param aCapture
+     * @return The number of words imported.
+     * @throws IOException
+     */
+    public static long importText(Path aText, Path aCapture) throws IOException {
+        Path reportPath = aCapture.resolveSibling(aCapture.getFileName() + REPORT_SUFFIX);
+        Files.deleteIfExists(reportPath);
+        Report report = new Report(aText, reportPath);
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_RECORDS * CaptureFormat.RECORD_SIZE).order(CaptureFormat.BYTE_ORDER);
+        try(HexCaptureReader reader = new HexCaptureReader(aText);
+            IndexedCaptureSink sink = new IndexedCaptureSink(aCapture)) {
+            reader.setMalformedLineListener(report::malformed);
+            long timestamp = 0;
+            long word;
+            while((word = reader.next()) != HexCaptureReader.END) {
+                if(reader.getLastDigitCount() <= SHORT_DIGITS) {
+                    report.shortLine(reader.getLineNumber(), (int)word, reader.getLastDigitCount());
+                }
+                CaptureFormat.putRecord(batch, timestamp, TEXT_CHANNEL, (int)word);
+                timestamp += WORD_NANOS;
+                if(!batch.hasRemaining()) {
+                    batch.flip();
+                    sink.write(batch);
+                    batch.clear();
+                }
+            }
+            batch.flip();
+            sink.write(batch);
+            report.close(reader.getWordCount(), reader.getMalformedCount());
+            return reader.getWordCount();
+        } finally {
+            report.close(-1, -1);
+        }
+    }
+
+    /**
+     * Writes a binary capture out as text in the legacy format.
+     * @param aCapture
+     * @param aText
+     * @return The number of words exported.
+     * @throws IOException
+     */
+    public static long exportText(Path aCapture, Path aText) throws IOException {
+        CaptureFile capture = CaptureFile.open(aCapture);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TEXT_BUFFER_SIZE);
+        try(FileChannel channel = FileChannel.open(aText, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long count = capture.getRecordCount();
+            for(long i = 0; i < count; i++) {
+                if(buffer.remaining() < 9) {
+                    drain(channel, buffer);
+                }
+                putHex(buffer, capture.getWord(i));
+                buffer.put((byte)'\n');
+            }
+            drain(channel, buffer);
+            return count;
+        }
+    }
+
+    /**
+     * Imports many text captures in parallel. Each aTexts[i] becomes
+     * <aOutDir>/<name>.a429. A file that fails does not stop the others.
+     * @param aTexts
+     * @param aOutDir
+     * @param aThreads
+     * @return The total number of words imported.
+     * @throws IOException If any file failed; the rest are attached as suppressed.
+     */
+    public static long importAll(List<Path> aTexts, Path aOutDir, int aThreads) throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        for(Path text : aTexts) {
+            outputs.add(aOutDir.resolve(baseName(text) + ".a429"));
+        }
+        return convertAll(aTexts, outputs, aThreads, true);
+    }
+
+    /**
+     * Exports many binary captures in parallel. Each aCaptures[i] becomes
+     * <aOutDir>/<name>.log.
+     * @param aCaptures
+     * @param aOutDir
+     * @param aThreads
+     * @return The total number of words exported.
+     * @throws IOException If any file failed; the rest are attached as suppressed.
+     */
+    public static long exportAll(List<Path> aCaptures, Path aOutDir, int aThreads) throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        for(Path capture : aCaptures) {
+            outputs.add(aOutDir.resolve(baseName(capture) + ".log"));
+        }
+        return convertAll(aCaptures, outputs, aThreads, false);
+    }
+
+    public static void main(String[] aArgs) throws IOException {
+        if(aArgs.length < 3 || !(aArgs[0].equals("import") || aArgs[0].equals("export"))) {
+            System.err.println("Usage: CaptureTextConverter import|export <out dir> <files...>");
+            return;
+        }
+        Path outDir = Paths.get(aArgs[1]);
+        Files.createDirectories(outDir);
+        List<Path> inputs = new ArrayList<>();
+        for(int i = 2; i < aArgs.length; i++) {
+            inputs.add(Paths.get(aArgs[i]));
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        long words = aArgs[0].equals("import")
+                ? importAll(inputs, outDir, threads)
+                : exportAll(inputs, outDir, threads);
+        System.out.println("Converted " + words + " words from " + inputs.size() + " files in " +
+                (System.nanoTime() - start) / 1000000 + " ms.");
+    }
+
+    private static long convertAll(List<Path> aInputs, List<Path> aOutputs, int aThreads, boolean aImport) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, aThreads));
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for(int i = 0; i < aInputs.size(); i++) {
+                Path input = aInputs.get(i);
+                Path output = aOutputs.get(i);
+                results.add(pool.submit(() -> aImport ? importText(input, output) : exportText(input, output)));
+            }
+            long total = 0;
+            IOException failure = null;
+            for(int i = 0; i < results.size(); i++) {
+                try {
+                    total += results.get(i).get();
+                } catch(ExecutionException e) {
+                    IOException error = new IOException("Converting " + aInputs.get(i) + " failed.", e.getCause());
+                    if(failure == null) {
+                        failure = error;
+                    } else {
+                        failure.addSuppressed(error);
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while converting captures.", e);
+                }
+            }
+            if(failure != null) {
+                throw failure;
+            }
+            return total;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String baseName(Path aFile) {
+        String name = aFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Writes aWord as Integer.toHexString() would: lower case, no leading zeros.
+     */
+    private static void putHex(ByteBuffer aBuffer, int aWord) {
+        int shift = Math.max(0, (31 - Integer.numberOfLeadingZeros(aWord)) & ~3);
+        for(; shift >= 0; shift -= 4) {
+            aBuffer.put(HEX_DIGITS[(aWord >>> shift) & 0xf]);
+        }
+    }
+
+    private static void drain(FileChannel aChannel, ByteBuffer aBuffer) throws IOException {
+        aBuffer.flip();
+        while(aBuffer.hasRemaining()) {
+            aChannel.write(aBuffer);
+        }
+        aBuffer.clear();
+    }
+
+    /**
+     * Side report for one import, opened on the first problem.
+     */
+    private static class Report {
+        Report(Path aText, Path aPath) {
+            mText = aText;
+            mPath = aPath;
+        }
+
+        void malformed(long aLineNumber, String aText) {
+            line(aLineNumber, "malformed", aText);
+        }
+
+        void shortLine(long aLineNumber, int aWord, int aDigits) {
+            mShort++;
+            line(aLineNumber, "short", Integer.toHexString(aWord) + " (" + aDigits + " digits)");
+        }
+
+        void close(long aWords, long aMalformed) {
+            if(mOut == null) {
+                return;
+            }
+            if(aWords >= 0) {
+                mOut.println("# " + aWords + " words imported, " + aMalformed + " malformed lines skipped, " +
+                        mShort + " short lines imported.");
+            }
+            mOut.close();
+            mOut = null;
+        }
+
+        private void line(long aLineNumber, String aKind, String aDetail) {
+            if(mOut == null) {
+                if(mFailed) {
+                    return;
+                }
+                try {
+                    mOut = new PrintWriter(Files.newBufferedWriter(mPath));
+                } catch(IOException e) {
+                    // Reporting is best effort; the import itself carries on.
+                    e.printStackTrace();
+                    mFailed = true;
+                    return;
+                }
+                mOut.println("# Problems found importing " + mText);
+            }
+            mOut.println(aLineNumber + "\t" + aKind + "\t" + aDetail);
+        }
+
+        private final Path mText;
+        private final Path mPath;
+        private PrintWriter mOut;
+        private long mShort;
+        private boolean mFailed;
+    }
+}
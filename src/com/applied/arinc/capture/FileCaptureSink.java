@@ -0,0 +1,61 @@
+package com.applied.arinc.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes records to a single capture file through a FileChannel.
+ * @author James
+ */
+public class FileCaptureSink implements CaptureSink {
+    
+    /**
+     * Creates (or truncates) aFile and writes the capture header.
+     * @param aFile
+     * @throws IOException 
+     */
+    public FileCaptureSink(Path aFile) throws IOException {
+        mChannel = FileChannel.open(aFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                    StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(CaptureFormat.HEADER_SIZE).order(CaptureFormat.BYTE_ORDER);
+        CaptureFormat.putHeader(header, 0);
+        header.flip();
+        writeFully(header);
+    }
+
+    @Override
+    public void write(ByteBuffer aRecords) throws IOException {
+        writeFully(aRecords);
+    }
+    
+    /**
+     * Writes all of aBuffer at the channel's position, bypassing any record
+     * processing subclasses add to write().
+     * @param aBuffer
+     * @throws IOException 
+     */
+    protected void writeFully(ByteBuffer aBuffer) throws IOException {
+        while(aBuffer.hasRemaining()) {
+            mChannel.write(aBuffer);
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        mChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+    
+    protected FileChannel getChannel() {
+        return mChannel;
+    }
+    
+    private final FileChannel mChannel;
+}
@@ -0,0 +1,201 @@
+package com.applied.arinc.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads legacy text captures (deiLog.log style: one word per line in hex)
+ * straight from a memory mapping. Words are parsed from bytes through a lookup
+ * table with no String or per-line allocation, and malformed lines are skipped
+ * and counted instead of throwing.
+ *
+ * A line is accepted if it holds 1 to 8 hex digits, optionally followed by a
+ * carriage return. Blank lines are skipped without being counted as malformed.
+ * @author James
+ */
+public class HexCaptureReader implements Closeable {
+    /**
+     * Returned by next() at the end of the file.
+     */
+    public static final long END = -1L;
+
+    private static final long DEFAULT_WINDOW = 256L * 1024 * 1024;
+    private static final byte[] HEX_VALUE = new byte[256];
+    private static final int MAX_DIGITS = 8;
+    private static final int MAX_REPORTED_CHARS = 64;
+
+    /**
+     * Told about each malformed line as it is skipped.
+     */
+    public interface MalformedLineListener {
+        /**
+         * @param aLineNumber 1-based.
+         * @param aText The line as read, cut to 64 characters.
+         */
+        void malformedLine(long aLineNumber, String aText);
+    }
+
+    static {
+        for(int i = 0; i < 256; i++) {
+            HEX_VALUE[i] = -1;
+        }
+        for(int i = 0; i < 10; i++) {
+            HEX_VALUE['0' + i] = (byte)i;
+        }
+        for(int i = 0; i < 6; i++) {
+            HEX_VALUE['a' + i] = (byte)(10 + i);
+            HEX_VALUE['A' + i] = (byte)(10 + i);
+        }
+    }
+
+    public HexCaptureReader(Path aFile) throws IOException {
+        this(aFile, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param aFile
+     * @param aWindowBytes How much of the file to map at a time. Must be larger
+     *                     than the longest line.
+     * @throws IOException
+     */
+    public HexCaptureReader(Path aFile, long aWindowBytes) throws IOException {
+        mChannel = FileChannel.open(aFile, StandardOpenOption.READ);
+        mSize = mChannel.size();
+        mWindowBytes = aWindowBytes;
+        map(0);
+    }
+
+    /**
+     * Parses the next well formed line.
+     * @return The word in the low 32 bits, or END.
+     * @throws IOException
+     */
+    public long next() throws IOException {
+        while(true) {
+            int pos = mPos;
+            int limit = mLimit;
+            boolean lastWindow = mWindowStart + limit >= mSize;
+            if(pos >= limit) {
+                if(lastWindow) {
+                    return END;
+                }
+                map(mWindowStart + pos);
+                continue;
+            }
+            MappedByteBuffer map = mMap;
+            // Find the end of the line within the window.
+            int end = pos;
+            while(end < limit && map.get(end) != '\n') {
+                end++;
+            }
+            if(end == limit && !lastWindow) {
+                if(pos == 0) {
+                    throw new IOException("Line at offset " + mWindowStart + " is longer than the mapping window.");
+                }
+                map(mWindowStart + pos);
+                continue;
+            }
+            mPos = end + 1;
+            mLines++;
+
+            int lineEnd = end;
+            if(lineEnd > pos && map.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            int digits = lineEnd - pos;
+            if(digits == 0) {
+                continue;
+            }
+            int value = 0;
+            int bad = digits > MAX_DIGITS ? -1 : 0;
+            for(int i = pos; i < lineEnd && bad == 0; i++) {
+                int nibble = HEX_VALUE[map.get(i) & 0xff];
+                bad = nibble >> 31;
+                value = (value << 4) | nibble;
+            }
+            if(bad != 0) {
+                mMalformed++;
+                if(mListener != null) {
+                    reportMalformed(pos, lineEnd);
+                }
+                continue;
+            }
+            mLastDigits = digits;
+            mWords++;
+            return value & 0xffffffffL;
+        }
+    }
+
+    /**
+     * Registers a listener for malformed lines. Reporting builds a String per
+     * malformed line; well formed lines still allocate nothing.
+     * @param aListener The listener, or null for none.
+     */
+    public void setMalformedLineListener(MalformedLineListener aListener) {
+        mListener = aListener;
+    }
+
+    /**
+     * @return How many hex digits the line last returned by next() had. Captures
+     *         written with Integer.toHexString() drop leading zeros, so fewer
+     *         than 8 may mean a zero-padded word or a truncated line.
+     */
+    public int getLastDigitCount() {
+        return mLastDigits;
+    }
+
+    /**
+     * @return The 1-based line number of the line last consumed.
+     */
+    public long getLineNumber() {
+        return mLines;
+    }
+
+    public long getWordCount() {
+        return mWords;
+    }
+
+    public long getMalformedCount() {
+        return mMalformed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    private void reportMalformed(int aStart, int aEnd) {
+        int length = Math.min(aEnd - aStart, MAX_REPORTED_CHARS);
+        char[] text = new char[length];
+        for(int i = 0; i < length; i++) {
+            text[i] = (char)(mMap.get(aStart + i) & 0xff);
+        }
+        mListener.malformedLine(mLines, new String(text));
+    }
+
+    private void map(long aOffset) throws IOException {
+        long length = Math.min(mWindowBytes, mSize - aOffset);
+        mMap = mChannel.map(FileChannel.MapMode.READ_ONLY, aOffset, length);
+        mWindowStart = aOffset;
+        mPos = 0;
+        mLimit = (int)length;
+    }
+
+    private final FileChannel mChannel;
+    private final long mSize;
+    private final long mWindowBytes;
+    private MappedByteBuffer mMap;
+    private long mWindowStart;
+    private int mPos;
+    private int mLimit;
+
+    private int mLastDigits;
+    private long mLines;
+    private long mWords;
+    private long mMalformed;
+    private MalformedLineListener mListener;
+}
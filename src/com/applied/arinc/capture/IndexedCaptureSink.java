@@ -0,0 +1,49 @@
+package com.applied.arinc.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Capture file sink which indexes records as they are written and appends the
+ * index as a footer on close, so CaptureFile can seek by time or iterate a
+ * single label without scanning. A capture cut short before close() has no
+ * footer and is indexed by CaptureFile when opened instead.
+ * @author James
+ */
+public class IndexedCaptureSink extends FileCaptureSink {
+    
+    public IndexedCaptureSink(Path aFile) throws IOException {
+        this(aFile, CaptureIndex.DEFAULT_BLOCK_RECORDS);
+    }
+    
+    public IndexedCaptureSink(Path aFile, int aBlockRecords) throws IOException {
+        super(aFile);
+        mIndex = new CaptureIndex(aBlockRecords);
+    }
+
+    @Override
+    public void write(ByteBuffer aRecords) throws IOException {
+        for(int i = aRecords.position(); i < aRecords.limit(); i += CaptureFormat.RECORD_SIZE) {
+            mIndex.add(aRecords.getLong(i + CaptureFormat.TIMESTAMP_OFFSET),
+                       aRecords.getInt(i + CaptureFormat.WORD_OFFSET));
+        }
+        super.write(aRecords);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long footerOffset = CaptureFormat.HEADER_SIZE + mIndex.getRecordCount() * CaptureFormat.RECORD_SIZE;
+            ByteBuffer footer = ByteBuffer.allocate(mIndex.getSerializedSize()).order(CaptureFormat.BYTE_ORDER);
+            mIndex.write(footer, footerOffset);
+            footer.flip();
+            writeFully(footer);
+            sync();
+        } finally {
+            super.close();
+        }
+    }
+    
+    private final CaptureIndex mIndex;
+}
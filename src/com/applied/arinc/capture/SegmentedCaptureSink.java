@@ -0,0 +1,344 @@
+package com.applied.arinc.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only flight recorder store made of fixed size segments in one
+ * directory. Records go to the active segment, an ordinary indexed capture;
+ * when it is full it is sealed with its index footer and a new one is started.
+ *
+ * Crash safety: every sync() forces the active segment and then overwrites a
+ * small checkpoint file with the active segment's number and how many of its
+ * records are on stable storage. On start-up an unsealed segment left by a crash
+ * is cut back to its checkpointed length (or to whole records if the checkpoint
+ * is unusable) and sealed, so no more than one sync interval is ever lost.
+ *
+ * Write amplification is kept low for SD cards: records are only ever appended,
+ * the checkpoint is a single 24 byte block rewritten in place (a CRC rejects a
+ * torn write), and nothing is preallocated. Retention and the optional
+ * compaction of sealed segments into CaptureArchive files (about a third of the
+ * size) run on a background thread, never on the writer thread. Retention drops
+ * the oldest sealed segments when the store exceeds its size budget or they
+ * exceed the maximum age.
+ *
+ * Segments are named segment-<number>.a429, or .a4z once compacted.
+ * @author James
+ */
+public class SegmentedCaptureSink implements CaptureSink {
+    public static final String SEGMENT_PREFIX = "segment-";
+    public static final String SEGMENT_SUFFIX = ".a429";
+    public static final String ARCHIVE_SUFFIX = ".a4z";
+    public static final String CHECKPOINT_NAME = "checkpoint";
+
+    private static final int CHECKPOINT_MAGIC = 0x50433441; // "A4CP" read little endian.
+    private static final int CHECKPOINT_SIZE = 24;
+
+    /**
+     * Opens (or creates) a store, recovering anything left by an unclean
+     * shutdown, and starts a new active segment.
+     * @param aDirectory
+     * @param aSegmentBytes Target size of each segment's records.
+     * @param aMaxTotalBytes Size budget for the whole store, or 0 for none.
+     * @param aMaxAgeMillis Age after which sealed segments are deleted, or 0
+     *                      for none.
+     * @param aCompact True to compress sealed segments in the background.
+     * @throws IOException
+     */
+    public SegmentedCaptureSink(Path aDirectory, long aSegmentBytes, long aMaxTotalBytes,
+                                long aMaxAgeMillis, boolean aCompact) throws IOException {
+        mDirectory = aDirectory;
+        mSegmentRecords = Math.max(1, aSegmentBytes / CaptureFormat.RECORD_SIZE);
+        mMaxTotalBytes = aMaxTotalBytes;
+        mMaxAgeMillis = aMaxAgeMillis;
+        mCompact = aCompact;
+        Files.createDirectories(aDirectory);
+        mCheckpoint = FileChannel.open(aDirectory.resolve(CHECKPOINT_NAME), StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mCheckpointBuffer = ByteBuffer.allocate(CHECKPOINT_SIZE).order(CaptureFormat.BYTE_ORDER);
+        mMaintenance = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "SegmentMaintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long next = recover();
+        openSegment(next);
+        mMaintenance.execute(this::maintain);
+    }
+
+    /**
+     * @return Every segment in the store, oldest first, compacted or not. The
+     *         last one is the active segment.
+     * @throws IOException
+     */
+    public List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(mDirectory, SEGMENT_PREFIX + "*")) {
+            for(Path path : stream) {
+                if(sequenceOf(path) >= 0) {
+                    segments.add(path);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    @Override
+    public void write(ByteBuffer aRecords) throws IOException {
+        int limit = aRecords.limit();
+        while(aRecords.remaining() >= CaptureFormat.RECORD_SIZE) {
+            if(mActiveRecords == mSegmentRecords) {
+                rotate();
+            }
+            long room = mSegmentRecords - mActiveRecords;
+            int records = (int)Math.min(room, aRecords.remaining() / CaptureFormat.RECORD_SIZE);
+            aRecords.limit(aRecords.position() + records * CaptureFormat.RECORD_SIZE);
+            mActive.write(aRecords);
+            aRecords.limit(limit);
+            mActiveRecords += records;
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        mActive.sync();
+        writeCheckpoint(mActiveSequence, mActiveRecords);
+    }
+
+    /**
+     * Seals the active segment and stops background maintenance once any work
+     * already queued has finished.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            mActive.close();
+            writeCheckpoint(mActiveSequence, -1);
+        } finally {
+            mMaintenance.shutdown();
+            try {
+                mMaintenance.awaitTermination(1, TimeUnit.MINUTES);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mCheckpoint.close();
+        }
+    }
+
+    private void rotate() throws IOException {
+        // IndexedCaptureSink.close() writes and syncs the footer.
+        mActive.close();
+        openSegment(mActiveSequence + 1);
+        mMaintenance.execute(this::maintain);
+    }
+
+    private void openSegment(long aSequence) throws IOException {
+        mActive = new IndexedCaptureSink(segmentPath(aSequence, SEGMENT_SUFFIX));
+        mActiveSequence = aSequence;
+        mActiveRecords = 0;
+        writeCheckpoint(aSequence, 0);
+    }
+
+    /**
+     * Seals whatever an unclean shutdown left behind.
+     * @return The number for the next segment.
+     */
+    private long recover() throws IOException {
+        long checkpointSequence = -1;
+        long checkpointRecords = -1;
+        ByteBuffer buffer = mCheckpointBuffer;
+        buffer.clear();
+        while(buffer.hasRemaining() && mCheckpoint.read(buffer, buffer.position()) > 0) {
+        }
+        if(buffer.position() == CHECKPOINT_SIZE && buffer.getInt(0) == CHECKPOINT_MAGIC &&
+           buffer.getInt(20) == checksum(buffer)) {
+            checkpointSequence = buffer.getLong(4);
+            checkpointRecords = buffer.getLong(12);
+        }
+
+        // Compaction output that never got renamed into place.
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(mDirectory, SEGMENT_PREFIX + "*.tmp")) {
+            for(Path temp : stream) {
+                Files.delete(temp);
+            }
+        }
+
+        long next = 0;
+        for(Path segment : listSegments()) {
+            long sequence = sequenceOf(segment);
+            next = Math.max(next, sequence + 1);
+            if(segment.toString().endsWith(SEGMENT_SUFFIX)) {
+                seal(segment, sequence == checkpointSequence ? checkpointRecords : -1);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Gives a segment without a footer one, first cutting it back to aRecords
+     * records (or to whole records if aRecords is negative).
+     */
+    private static void seal(Path aSegment, long aRecords) throws IOException {
+        if(Files.size(aSegment) < CaptureFormat.HEADER_SIZE) {
+            // Died before the header reached the disk.
+            Files.delete(aSegment);
+            return;
+        }
+        try(FileChannel channel = FileChannel.open(aSegment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if(CaptureFile.readFooter(channel, size) != null) {
+                return;
+            }
+            long present = (size - CaptureFormat.HEADER_SIZE) / CaptureFormat.RECORD_SIZE;
+            long records = aRecords < 0 ? present : Math.min(aRecords, present);
+            long footerOffset = CaptureFormat.HEADER_SIZE + records * CaptureFormat.RECORD_SIZE;
+            channel.truncate(footerOffset);
+
+            CaptureIndex index = new CaptureIndex(CaptureIndex.DEFAULT_BLOCK_RECORDS);
+            if(records > 0) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, footerOffset);
+                map.order(CaptureFormat.BYTE_ORDER);
+                for(long i = 0; i < records; i++) {
+                    int offset = (int)(CaptureFormat.HEADER_SIZE + i * CaptureFormat.RECORD_SIZE);
+                    index.add(map.getLong(offset + CaptureFormat.TIMESTAMP_OFFSET),
+                              map.getInt(offset + CaptureFormat.WORD_OFFSET));
+                }
+            }
+            ByteBuffer footer = ByteBuffer.allocate(index.getSerializedSize()).order(CaptureFormat.BYTE_ORDER);
+            index.write(footer, footerOffset);
+            footer.flip();
+            long position = footerOffset;
+            while(footer.hasRemaining()) {
+                position += channel.write(footer, position);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Runs on the maintenance thread: compacts sealed segments, then applies
+     * retention.
+     */
+    private void maintain() {
+        try {
+            List<Path> segments = listSegments();
+            long active = mActiveSequence;
+            if(mCompact) {
+                for(int i = 0; i < segments.size(); i++) {
+                    Path segment = segments.get(i);
+                    long sequence = sequenceOf(segment);
+                    if(sequence < active && segment.toString().endsWith(SEGMENT_SUFFIX)) {
+                        segments.set(i, compact(segment, sequence));
+                    }
+                }
+            }
+            applyRetention(segments, active);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Path compact(Path aSegment, long aSequence) throws IOException {
+        Path archive = segmentPath(aSequence, ARCHIVE_SUFFIX);
+        Path temp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        CaptureArchive.compress(aSegment, temp);
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(aSegment);
+        return archive;
+    }
+
+    private void applyRetention(List<Path> aSegments, long aActive) throws IOException {
+        long total = 0;
+        for(Path segment : aSegments) {
+            total += Files.size(segment);
+        }
+        long oldest = System.currentTimeMillis() - mMaxAgeMillis;
+        for(Path segment : aSegments) {
+            if(sequenceOf(segment) >= aActive) {
+                break;
+            }
+            boolean overSize = mMaxTotalBytes > 0 && total > mMaxTotalBytes;
+            boolean tooOld = mMaxAgeMillis > 0 && Files.getLastModifiedTime(segment).toMillis() < oldest;
+            if(!overSize && !tooOld) {
+                break;
+            }
+            long size = Files.size(segment);
+            Files.delete(segment);
+            total -= size;
+        }
+    }
+
+    private void writeCheckpoint(long aSequence, long aRecords) throws IOException {
+        ByteBuffer buffer = mCheckpointBuffer;
+        buffer.clear();
+        buffer.putInt(CHECKPOINT_MAGIC);
+        buffer.putLong(aSequence);
+        buffer.putLong(aRecords);
+        buffer.putInt(checksum(buffer));
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            mCheckpoint.write(buffer, buffer.position());
+        }
+        mCheckpoint.force(false);
+    }
+
+    private static int checksum(ByteBuffer aCheckpoint) {
+        CRC32 crc = new CRC32();
+        for(int i = 0; i < 20; i++) {
+            crc.update(aCheckpoint.get(i));
+        }
+        return (int)crc.getValue();
+    }
+
+    private Path segmentPath(long aSequence, String aSuffix) {
+        return mDirectory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, aSequence, aSuffix));
+    }
+
+    private static long sequenceOf(Path aSegment) {
+        String name = aSegment.getFileName().toString();
+        int end = name.endsWith(SEGMENT_SUFFIX) ? name.length() - SEGMENT_SUFFIX.length()
+                : name.endsWith(ARCHIVE_SUFFIX) ? name.length() - ARCHIVE_SUFFIX.length() : -1;
+        if(end <= SEGMENT_PREFIX.length()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), end));
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final Path mDirectory;
+    private final long mSegmentRecords;
+    private final long mMaxTotalBytes;
+    private final long mMaxAgeMillis;
+    private final boolean mCompact;
+    private final FileChannel mCheckpoint;
+    private final ByteBuffer mCheckpointBuffer;
+    private final ExecutorService mMaintenance;
+
+    // Writer thread only.
+    private IndexedCaptureSink mActive;
+    private volatile long mActiveSequence;
+    private long mActiveRecords;
+}
@@ -0,0 +1,73 @@
+package com.applied.arinc.messages;
+
+import java.nio.IntBuffer;
+import java.util.ServiceLoader;
+
+/**
+ * Decodes arrays of raw words into ArincWordColumns. Used for offline analysis
+ * where words are decoded by the million rather than one at a time.
+ * 
+ * getDefault() picks the implementation at runtime: the first provider listed in
+ * META-INF/services/com.applied.arinc.messages.ArincBatchDecoder which reports
+ * itself as supported on the running JVM (e.g. one built against the incubating
+ * Vector API), falling back to the scalar decoder.
+ * @author James
+ */
+public abstract class ArincBatchDecoder {
+    
+    /**
+     * @return True if this implementation can run on the current JVM.
+     */
+    public boolean isSupported() {
+        return true;
+    }
+    
+    /**
+     * Decodes aLength words starting at aOffset into rows 0 to aLength - 1 of aOut.
+     * @param aWords
+     * @param aOffset
+     * @param aLength Must not exceed aOut's capacity.
+     * @param aOut 
+     */
+    public abstract void decode(int[] aWords, int aOffset, int aLength, ArincWordColumns aOut);
+    
+    /**
+     * Decodes as many of aWords' remaining words as fit in aOut, advancing the
+     * buffer's position past them.
+     * @param aWords
+     * @param aOut
+     * @return The number of words decoded.
+     */
+    public int decode(IntBuffer aWords, ArincWordColumns aOut) {
+        int length = Math.min(aWords.remaining(), aOut.getCapacity());
+        if(aWords.hasArray()) {
+            decode(aWords.array(), aWords.arrayOffset() + aWords.position(), length, aOut);
+            aWords.position(aWords.position() + length);
+        } else {
+            // Direct and mapped buffers are staged through the raw column.
+            aWords.get(aOut.getRaw(), 0, length);
+            decode(aOut.getRaw(), 0, length, aOut);
+        }
+        return length;
+    }
+    
+    public static ArincBatchDecoder getDefault() {
+        return sDefault;
+    }
+    
+    private static ArincBatchDecoder selectDefault() {
+        try {
+            for(ArincBatchDecoder decoder : ServiceLoader.load(ArincBatchDecoder.class)) {
+                if(decoder.isSupported()) {
+                    return decoder;
+                }
+            }
+        } catch(Throwable t) {
+            // A provider built for a newer JVM may fail to link; use the scalar path.
+            System.err.println("ArincBatchDecoder - ignoring providers: " + t);
+        }
+        return new ScalarArincBatchDecoder();
+    }
+    
+    private static final ArincBatchDecoder sDefault = selectDefault();
+}
@@ -0,0 +1,177 @@
+package com.applied.arinc.messages;
+
+/**
+ * Decodes BCD words through precomputed digit tables. A standard ARINC BCD word
+ * carries five digits, most significant first: a 3-bit digit at bits 26-28 and
+ * 4-bit digits at bits 22-25, 18-21, 14-17 and 10-13 (0-based).
+ *
+ * The tables map a whole byte of the word to the value of the digits it holds,
+ * so a five digit value or a radio frequency is three or four array loads and a
+ * sum. Any nibble which is not a valid BCD digit maps to a large negative
+ * value, so an invalid word always decodes negative without a branch per digit.
+ * Nothing in here allocates.
+ * @author James
+ */
+public final class ArincBcd {
+    /**
+     * Number of digits in a standard BCD word.
+     */
+    public static final int DIGIT_COUNT = 5;
+
+    private static final int INVALID_DIGITS = -(1 << 28);
+    private static final long INVALID_HZ = -(1L << 40);
+
+    private ArincBcd() {
+    }
+
+    /**
+     * Writes the five digits of aWord, most significant first, into aDest.
+     * Digits are written as they appear; nibbles above 9 are not rejected.
+     * @param aWord
+     * @param aDest
+     * @param aOffset
+     * @return The offset just past the last written digit.
+     */
+    public static int digits(int aWord, int[] aDest, int aOffset) {
+        aDest[aOffset] = (aWord >>> 26) & 0x7;
+        aDest[aOffset + 1] = (aWord >>> 22) & 0xf;
+        aDest[aOffset + 2] = (aWord >>> 18) & 0xf;
+        aDest[aOffset + 3] = (aWord >>> 14) & 0xf;
+        aDest[aOffset + 4] = (aWord >>> 10) & 0xf;
+        return aOffset + DIGIT_COUNT;
+    }
+
+    /**
+     * Decodes the five digits of aWord as a single integer, 0 to 79999.
+     * @param aWord
+     * @return The value, or a negative number if any digit is not valid BCD.
+     */
+    public static int value(int aWord) {
+        return DIGITS_HI[(aWord >>> 26) & 0x7] +
+               DIGITS_MID[(aWord >>> 18) & 0xff] +
+               DIGITS_LO[(aWord >>> 10) & 0xff];
+    }
+
+    /**
+     * Decodes aLength words with value(), writing the results to aDest.
+     * @param aWords
+     * @param aOffset
+     * @param aDest
+     * @param aDestOffset
+     * @param aLength
+     */
+    public static void values(int[] aWords, int aOffset, int[] aDest, int aDestOffset, int aLength) {
+        for(int i = 0; i < aLength; i++) {
+            aDest[aDestOffset + i] = value(aWords[aOffset + i]);
+        }
+    }
+
+    /**
+     * Returns true if aLabel is one of the frequency labels frequencyHz() knows:
+     * 032 (ADF), 033 (ILS), 034 (VOR/ILS) and 035 (DME).
+     * @param aLabel
+     * @return
+     */
+    public static boolean isFrequencyLabel(int aLabel) {
+        return FREQ_KIND[aLabel & ArincWord.LABEL_MASK] != KIND_NONE;
+    }
+
+    /**
+     * Decodes a frequency word using the layout of the word's own label, per
+     * the GAMA 5.1 bit definitions.
+     * @param aWord
+     * @return The frequency in Hz, or a negative number if the label is not a
+     *         frequency label or a digit is not valid BCD.
+     */
+    public static long frequencyHz(int aWord) {
+        int kind = FREQ_KIND[aWord & ArincWord.LABEL_MASK];
+        return FREQ_BASE[kind] +
+               FREQ_HI[kind][(aWord >>> 22) & 0x7f] +
+               FREQ_LO[kind][(aWord >>> 14) & 0xff] +
+               ((aWord >>> FREQ_STEP_SHIFT[kind]) & 1) * FREQ_STEP[kind];
+    }
+
+    /**
+     * Decodes aLength words with frequencyHz(), writing the results to aDest.
+     * @param aWords
+     * @param aOffset
+     * @param aDest
+     * @param aDestOffset
+     * @param aLength
+     */
+    public static void frequenciesHz(int[] aWords, int aOffset, long[] aDest, int aDestOffset, int aLength) {
+        for(int i = 0; i < aLength; i++) {
+            aDest[aDestOffset + i] = frequencyHz(aWords[aOffset + i]);
+        }
+    }
+
+    // Digit tables. DIGITS_LO covers bits 10-17 (units and tens), DIGITS_MID
+    // bits 18-25 (hundreds and thousands), DIGITS_HI bits 26-28.
+    private static final int[] DIGITS_LO = new int[256];
+    private static final int[] DIGITS_MID = new int[256];
+    private static final int[] DIGITS_HI = new int[8];
+
+    // Frequency layouts, indexed by FREQ_KIND[label]. FREQ_HI covers bits 22-28,
+    // FREQ_LO bits 14-21, and FREQ_STEP is added when bit FREQ_STEP_SHIFT is set.
+    private static final int KIND_NONE = 0;
+    private static final int KIND_ADF = 1;
+    private static final int KIND_VHF = 2;
+    private static final int KIND_DME = 3;
+    private static final int[] FREQ_KIND = new int[ArincLabelTable.LABEL_COUNT];
+    private static final long[] FREQ_BASE = new long[4];
+    private static final long[][] FREQ_HI = new long[4][128];
+    private static final long[][] FREQ_LO = new long[4][256];
+    private static final long[] FREQ_STEP = new long[4];
+    private static final int[] FREQ_STEP_SHIFT = new int[4];
+
+    private static int digit(int aNibble) {
+        return aNibble <= 9 ? aNibble : INVALID_DIGITS;
+    }
+
+    static {
+        for(int i = 0; i < 256; i++) {
+            int lo = digit(i & 0xf);
+            int hi = digit(i >>> 4);
+            DIGITS_LO[i] = (lo < 0 || hi < 0) ? INVALID_DIGITS : hi * 10 + lo;
+            DIGITS_MID[i] = (lo < 0 || hi < 0) ? INVALID_DIGITS : (hi * 10 + lo) * 100;
+        }
+        for(int i = 0; i < 8; i++) {
+            DIGITS_HI[i] = i * 10000;
+        }
+
+        FREQ_KIND[ArincMessage.ADF_FREQUENCY_MSG] = KIND_ADF;
+        FREQ_KIND[ArincMessage.ILS_FREQUENCY_MSG] = KIND_VHF;
+        FREQ_KIND[ArincMessage.VOR_ILS_FREQUENCY_MSG] = KIND_VHF;
+        FREQ_KIND[ArincMessage.DME_FREQUENCY_MSG] = KIND_DME;
+
+        FREQ_BASE[KIND_NONE] = INVALID_HZ;
+        FREQ_BASE[KIND_VHF] = 100000000L;
+        FREQ_BASE[KIND_DME] = 100000000L;
+        for(int i = 0; i < 128; i++) {
+            // Bits 22-25 and 26-28: hundreds and thousands of kHz for the ADF,
+            // units and tens of MHz for the VHF radios.
+            int units = digit(i & 0xf);
+            int tens = i >>> 4;
+            boolean valid = units >= 0;
+            FREQ_HI[KIND_ADF][i] = valid ? (tens * 1000 + units * 100) * 1000L : INVALID_HZ;
+            FREQ_HI[KIND_VHF][i] = valid ? (tens * 10 + units) * 1000000L : INVALID_HZ;
+            FREQ_HI[KIND_DME][i] = FREQ_HI[KIND_VHF][i];
+        }
+        for(int i = 0; i < 256; i++) {
+            // Bits 14-17 and 18-21: units and tens of kHz for the ADF, hundredths
+            // and tenths of MHz for ILS/VOR. The DME only uses bits 18-21 as a
+            // digit; bits 14-17 there are mode and display discretes.
+            int lo = digit(i & 0xf);
+            int hi = digit(i >>> 4);
+            boolean valid = lo >= 0 && hi >= 0;
+            FREQ_LO[KIND_ADF][i] = valid ? (hi * 10 + lo) * 1000L : INVALID_HZ;
+            FREQ_LO[KIND_VHF][i] = valid ? hi * 100000L + lo * 10000L : INVALID_HZ;
+            FREQ_LO[KIND_DME][i] = hi >= 0 ? hi * 100000L : INVALID_HZ;
+        }
+        // ADF bit 13 adds 0.5 kHz, DME bit 17 adds 0.05 MHz.
+        FREQ_STEP_SHIFT[KIND_ADF] = 13;
+        FREQ_STEP[KIND_ADF] = 500;
+        FREQ_STEP_SHIFT[KIND_DME] = 17;
+        FREQ_STEP[KIND_DME] = 50000;
+    }
+}
@@ -0,0 +1,185 @@
+package com.applied.arinc.messages;
+
+/**
+ * Decodes BNR (two's complement binary) words into engineering values using
+ * per-label tables. The sign bit is always bit 28 (bit 29 in ARINC numbering)
+ * and the significant bits sit directly below it, so a label is described by
+ * its number of significant bits and the full scale range; the LSB weight is
+ * range / 2^bits.
+ *
+ * Tables are seeded from the GAMA publication 11 (ARINC 429 general aviation
+ * subset, version 5.1) label attributes. Decoding is two shifts and a multiply,
+ * with no per-bit work, no branches and no allocation. Labels which have not
+ * been defined decode to NaN (or 0 for the fixed point form).
+ *
+ * Labels may be added or overridden with define() at startup; the tables are
+ * not synchronized.
+ * @author James
+ */
+public final class ArincBnr {
+    // Bit 28 of the word (top bit of the data field) is the sign.
+    private static final int SIGN_BIT = 28;
+    private static final int DATA_SIGN_BIT = SIGN_BIT - ArincWord.DATA_SHIFT;
+
+    private ArincBnr() {
+    }
+
+    /**
+     * Defines how a label is scaled.
+     * @param aLabel
+     * @param aSigBits Number of significant bits, excluding the sign. At most 28.
+     * @param aRange Full scale range in engineering units; the MSB is worth
+     *               aRange / 2.
+     * @param aUnits Display name of the units.
+     */
+    public static void define(int aLabel, int aSigBits, double aRange, String aUnits) {
+        if(aSigBits < 1 || aSigBits > SIGN_BIT) {
+            throw new IllegalArgumentException("Label " + Integer.toOctalString(aLabel) + " has " + aSigBits + " significant bits.");
+        }
+        int label = aLabel & ArincWord.LABEL_MASK;
+        double lsb = aRange / (1 << aSigBits);
+        SHIFT[label] = 31 - aSigBits;
+        LSB[label] = lsb;
+        LSB_MICROS_Q16[label] = Math.round(lsb * 1e6 * 65536.0);
+        UNITS[label] = aUnits;
+    }
+
+    public static boolean isDefined(int aLabel) {
+        return !Double.isNaN(LSB[aLabel & ArincWord.LABEL_MASK]);
+    }
+
+    public static int getSignificantBits(int aLabel) {
+        return 31 - SHIFT[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    public static double getResolution(int aLabel) {
+        return LSB[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    public static String getUnits(int aLabel) {
+        return UNITS[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    /**
+     * Extracts the signed count of LSBs held in a raw word.
+     * @param aWord
+     * @return
+     */
+    public static int counts(int aWord) {
+        return (aWord << (31 - SIGN_BIT)) >> SHIFT[aWord & ArincWord.LABEL_MASK];
+    }
+
+    /**
+     * Converts a raw word to its engineering value, using the word's own label.
+     * @param aWord
+     * @return The scaled value, or NaN if the label is not defined.
+     */
+    public static double decode(int aWord) {
+        int label = aWord & ArincWord.LABEL_MASK;
+        return ((aWord << (31 - SIGN_BIT)) >> SHIFT[label]) * LSB[label];
+    }
+
+    /**
+     * Converts a raw word to millionths of its engineering unit, using integer
+     * arithmetic only.
+     * @param aWord
+     * @return The scaled value, or 0 if the label is not defined.
+     */
+    public static long decodeMicros(int aWord) {
+        int label = aWord & ArincWord.LABEL_MASK;
+        long counts = (aWord << (31 - SIGN_BIT)) >> SHIFT[label];
+        return (counts * LSB_MICROS_Q16[label]) >> 16;
+    }
+
+    /**
+     * Extracts the signed count of LSBs from a 19-bit data field.
+     * @param aLabel
+     * @param aData
+     * @return
+     */
+    public static int dataCounts(int aLabel, int aData) {
+        return (aData << (31 - DATA_SIGN_BIT)) >> SHIFT[aLabel & ArincWord.LABEL_MASK];
+    }
+
+    /**
+     * Converts a 19-bit data field, as held by ArincMessage, to its engineering
+     * value. Labels with more than 18 significant bits also use the SDI bits, so
+     * they lose their lowest bits when decoded from the data field alone.
+     * @param aLabel
+     * @param aData
+     * @return
+     */
+    public static double decodeData(int aLabel, int aData) {
+        int label = aLabel & ArincWord.LABEL_MASK;
+        return ((aData << (31 - DATA_SIGN_BIT)) >> SHIFT[label]) * LSB[label];
+    }
+
+    /**
+     * Converts an engineering value to a 19-bit data field, the inverse of
+     * decodeData(). The value is rounded to the nearest LSB; values outside the
+     * range wrap, which is what angles want.
+     * @param aLabel
+     * @param aValue
+     * @return The data field, or 0 if the label is not defined.
+     */
+    public static int encodeData(int aLabel, double aValue) {
+        int label = aLabel & ArincWord.LABEL_MASK;
+        if(SHIFT[label] == 31) {
+            return 0;
+        }
+        int counts = (int)Math.round(aValue / LSB[label]);
+        return ((counts << SHIFT[label]) >>> (31 - DATA_SIGN_BIT)) & ArincWord.DATA_MASK;
+    }
+
+    private static final int[] SHIFT = new int[ArincLabelTable.LABEL_COUNT];
+    private static final double[] LSB = new double[ArincLabelTable.LABEL_COUNT];
+    private static final long[] LSB_MICROS_Q16 = new long[ArincLabelTable.LABEL_COUNT];
+    private static final String[] UNITS = new String[ArincLabelTable.LABEL_COUNT];
+
+    static {
+        for(int i = 0; i < ArincLabelTable.LABEL_COUNT; i++) {
+            SHIFT[i] = 31;
+            LSB[i] = Double.NaN;
+        }
+
+        // GAMA publication 11, version 5.1 - ARINC 429 label attributes.
+        define(0100, 12, 180, "deg");       // Selected course 1
+        define(0101, 12, 180, "deg");       // Selected heading
+        define(0102, 16, 65536, "ft");      // Selected altitude
+        define(0105, 11, 180, "deg");       // Selected runway heading
+        define(0110, 12, 180, "deg");       // Selected course 2
+        define(0114, 12, 180, "deg");       // Desired track (true)
+        define(0115, 12, 180, "deg");       // Waypoint bearing (true)
+        define(0116, 15, 128, "nm");        // Cross track distance
+        define(0117, 14, 16384, "ft");      // Vertical deviation
+        define(0121, 14, 180, "deg");       // Horizontal command
+        define(0122, 12, 180, "deg");       // Vertical command
+        define(0147, 12, 180, "deg");       // Magnetic variation
+        define(0157, 12, 2, "stall");       // Normalized AOA
+        define(0162, 12, 180, "deg");       // ADF bearing
+        define(0163, 9, 256, "kt");         // Wind on nose
+        define(0173, 12, 0.4, "DDM");       // Localizer deviation
+        define(0174, 12, 0.8, "DDM");       // Glideslope deviation
+        define(0202, 16, 512, "nm");        // DME distance
+        define(0204, 17, 131072, "ft");     // Baro corrected altitude #1
+        define(0210, 15, 2048, "kt");       // True airspeed
+        define(0213, 11, 512, "degC");      // Static air temperature
+        define(0222, 12, 180, "deg");       // VOR omnibearing
+        define(0241, 12, 2, "stall");       // Normalized AOA
+        define(0251, 15, 4096, "nm");       // Distance to go
+        define(0252, 9, 512, "min");        // Time to go
+        define(0310, 20, 180, "deg");       // Present position latitude
+        define(0311, 20, 180, "deg");       // Present position longitude
+        define(0312, 15, 4096, "kt");       // Ground speed
+        define(0313, 12, 180, "deg");       // Track angle (true)
+        define(0314, 15, 180, "deg");       // True heading
+        define(0315, 8, 256, "kt");         // Wind speed
+        define(0316, 8, 180, "deg");        // Wind angle (true)
+        define(0320, 15, 180, "deg");       // Magnetic heading
+        define(0321, 12, 180, "deg");       // Drift angle
+        define(0326, 15, 128, "nm");        // Lateral scale factor
+        define(0327, 15, 2048, "ft");       // Vertical scale factor
+        define(0351, 18, 32768, "nm");      // Distance to destination
+        define(0352, 12, 4096, "min");      // Estimated time to destination
+    }
+}
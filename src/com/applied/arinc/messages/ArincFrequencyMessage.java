@@ -12,30 +12,29 @@ public class ArincFrequencyMessage extends ArincMessage {
         DME
     }
     
-    protected ArincFrequencyMessage(int aLabel, int aSignStatus, int aData, FrequencyType aFreqType) {
-        super(aLabel, aSignStatus, aData);
+    protected ArincFrequencyMessage(int aWord, long aTimestampNanos, FrequencyType aFreqType) {
+        super(aWord, aTimestampNanos);
         mFreqType = aFreqType;
-        
-        // For this data type, the frequency is encoded in 4 sets of 4-bits from bit 5 of the data to bit 29
-        int descriptor = getNBit(4, 0);
-        int p1 = getNBit(4, 4);
-        int p2 = getNBit(4, 8);
-        int p3 = getNBit(4, 12);
-        int p4 = getNBit(4, 16);
-        
-        switch(aFreqType) {
-            case ADF:
-                mFreq = p1 * + p2 * 10 + p3 * 100 + p4 * 1000 + ((descriptor & 8) >> 4) * .5;
-            case ILS:
-            case VOR_ILS:
-                mFreq = p1 * .01 + p2 * .1 + p3 + p4 * 10;
-            case DME:
-                mFreq = p1 * .05 + p2 * .1 + p3 + p4 * 10;
+    }
+    
+    /**
+     * Decodes the frequency from the word. Nothing is cached, so a message may
+     * be read from any thread.
+     * @return The tuned frequency - kHz for ADF, MHz otherwise - or NaN if the
+     *         word did not hold valid BCD.
+     */
+    public double getFrequency() {
+        // ADF frequencies are carried in kHz, the VHF radios in MHz.
+        long hz = ArincBcd.frequencyHz(getWord());
+        if(hz < 0) {
+            return Double.NaN;
         }
-        
-        System.out.println("Got frequency: " + mFreq);
+        return mFreqType == FrequencyType.ADF ? hz / 1e3 : hz / 1e6;
+    }
+    
+    public FrequencyType getFrequencyType() {
+        return mFreqType;
     }
     
-    FrequencyType mFreqType;
-    double mFreq;
+    final FrequencyType mFreqType;
 }
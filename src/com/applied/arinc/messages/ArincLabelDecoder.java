@@ -0,0 +1,15 @@
+package com.applied.arinc.messages;
+
+/**
+ * Decodes a raw ARINC word for a single label. Instances are registered into
+ * an ArincLabelTable, one slot per 8-bit label.
+ * @author James
+ */
+public interface ArincLabelDecoder {
+    /**
+     * @param aWord The raw 32-bit ARINC word.
+     * @param aTimestampNanos When the word was received, System.nanoTime() based.
+     * @return The decoded message, or null if the word should be dropped.
+     */
+    public ArincMessage decode(int aWord, long aTimestampNanos);
+}
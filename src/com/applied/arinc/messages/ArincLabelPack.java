@@ -0,0 +1,15 @@
+package com.applied.arinc.messages;
+
+/**
+ * Service provider interface for shipping label decoders outside of this
+ * package. Implementations are discovered through java.util.ServiceLoader by
+ * listing them in META-INF/services/com.applied.arinc.messages.ArincLabelPack.
+ * @author James
+ */
+public interface ArincLabelPack {
+    /**
+     * Registers this pack's decoders. Called once, while the table is built.
+     * @param aTable 
+     */
+    public void registerDecoders(ArincLabelTable aTable);
+}
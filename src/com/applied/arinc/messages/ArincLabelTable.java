@@ -0,0 +1,77 @@
+package com.applied.arinc.messages;
+
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+/**
+ * Preallocated 256-slot dispatch table mapping an 8-bit ARINC label to the
+ * decoder responsible for it. Dispatch is a single array load, so the cost does
+ * not depend on how many labels are registered.
+ * 
+ * Registration is expected to happen at startup, before words are decoded; the
+ * table is not synchronized.
+ * @author James
+ */
+public final class ArincLabelTable {
+    public static final int LABEL_COUNT = 256;
+    
+    /**
+     * Drops the word without decoding it.
+     */
+    public static final ArincLabelDecoder IGNORE = (aWord, aTimestampNanos) -> null;
+    
+    /**
+     * Passes the word through as a plain ArincMessage with no label specific
+     * interpretation.
+     */
+    public static final ArincLabelDecoder RAW = ArincMessage::new;
+    
+    /**
+     * Creates a table with every label mapped to RAW.
+     */
+    public ArincLabelTable() {
+        Arrays.fill(mDecoders, RAW);
+    }
+    
+    public void register(int aLabel, ArincLabelDecoder aDecoder) {
+        if(aDecoder == null) {
+            throw new IllegalArgumentException("Decoder for label " + Integer.toOctalString(aLabel) + " is null.");
+        }
+        mDecoders[aLabel & ArincWord.LABEL_MASK] = aDecoder;
+    }
+    
+    public void ignore(int aLabel) {
+        register(aLabel, IGNORE);
+    }
+    
+    public ArincLabelDecoder get(int aLabel) {
+        return mDecoders[aLabel & ArincWord.LABEL_MASK];
+    }
+    
+    /**
+     * Decodes aWord with the decoder registered for its label.
+     * @param aWord
+     * @param aTimestampNanos
+     * @return The decoded message, or null if the label is ignored.
+     */
+    public ArincMessage decode(int aWord, long aTimestampNanos) {
+        return mDecoders[aWord & ArincWord.LABEL_MASK].decode(aWord, aTimestampNanos);
+    }
+    
+    /**
+     * Lets every ArincLabelPack visible to aLoader register its decoders. Packs
+     * loaded later override earlier registrations for the same label.
+     * @param aLoader
+     * @return The number of packs loaded.
+     */
+    public int loadLabelPacks(ClassLoader aLoader) {
+        int count = 0;
+        for(ArincLabelPack pack : ServiceLoader.load(ArincLabelPack.class, aLoader)) {
+            pack.registerDecoders(this);
+            count++;
+        }
+        return count;
+    }
+    
+    private final ArincLabelDecoder[] mDecoders = new ArincLabelDecoder[LABEL_COUNT];
+}
@@ -1,25 +1,46 @@
 package com.applied.arinc.messages;
 
-import java.io.PrintWriter;
-
 /**
  * Offers access to things that all Arinc messages share in common. Superclass to
  * all Arinc message types.
+ * A message holds only the raw word and its receive time. Fields are extracted
+ * with a mask, and scaled values decoded from the raw word, on each call;
+ * nothing is cached, so consumers pay only for what they look at.
  * @author James
  */
 public class ArincMessage {
-    static PrintWriter pwLog = null;
+    private static final ArincLabelTable sLabelTable = createDefaultLabelTable();
+    
+    /**
+     * Constructs an ARINC message over a raw word. Only the word and timestamp
+     * are stored; fields are extracted when asked for.
+     * @param aWord The raw 32-bit ARINC word.
+     * @param aTimestampNanos When the word was received, System.nanoTime() based.
+     */
+    protected ArincMessage(int aWord, long aTimestampNanos) {
+        mWord = aWord;
+        mTimestampNanos = aTimestampNanos;
+    }
     
     /**
      * Constructs an ARINC message from it's constituent parts:
      * @param aLabel Label identifying the message.
-     * @param aSignStatus 2-bit item which modifies the data.
+     * @param aSdi 2-bit Source/Destination Identifier.
+     * @param aSignStatus 2-bit Sign/Status Matrix which modifies the data.
+     * @param aData  19-bit item which carries the data field of the message.
+     */
+    protected ArincMessage(int aLabel, int aSdi, int aSignStatus, int aData) {
+        this(ArincWord.pack(aLabel, aSdi, aData, aSignStatus, 0), 0);
+    }
+    
+    /**
+     * Constructs an ARINC message with an SDI of 0.
+     * @param aLabel Label identifying the message.
+     * @param aSignStatus 2-bit Sign/Status Matrix which modifies the data.
      * @param aData  19-bit item which carries the data field of the message.
      */
     protected ArincMessage(int aLabel, int aSignStatus, int aData) {
-        mLabel = aLabel;
-        mSign = aSignStatus;
-        mData = aData;
+        this(aLabel, 0, aSignStatus, aData);
     }
     
     static final int ADF_FREQUENCY_MSG = 032;
@@ -36,64 +57,77 @@ public class ArincMessage {
     /**
      * Processes a full ARINC frame into an ArincMessage object that describes it.
      * ARINC frames have the following format, starting from the MSB:
-         Parity – 1 bit
-         Sign/Status Matrix (SSM) – 2 bits
-         Data – 19 bits
-         Source/Destination Identifier (SDI) – 2 bits
-         Label – 8 bits
-     * All multi-bit data fields have the MSB first in their grouping - e.g. they
-     * are in inverse order and must be reversed.
-     * @param aFrame 
-     * @return A constructed ArincMessage object processed from the given frame.
+     *     Parity – 1 bit
+     *     Sign/Status Matrix (SSM) – 2 bits
+     *     Data – 19 bits
+     *     Source/Destination Identifier (SDI) – 2 bits
+     *     Label – 8 bits
+     * On the wire the label is sent MSB first and the other fields LSB first; the
+     * DEI1016 undoes this on receipt, so the frame arrives in numeric order.
+     * This allocates a message object per frame and is kept as a convenience;
+     * code on the acquisition path should use ArincWord or ArincWordView instead.
+     * Dispatch goes through the label table; labels with no registered decoder
+     * come back as a plain ArincMessage.
+     * @param aFrame The raw 32-bit ARINC word, as read from the receiver.
+     * @return A constructed ArincMessage object processed from the given frame,
+     *         or null if the label is ignored.
      */
     public static ArincMessage processArincFrame(int aFrame) {
-        if(pwLog == null){
-            try{
-                pwLog = new PrintWriter("deiLog.log");
-            }catch(Exception e){
-                e.printStackTrace();
-            }
-        }
-        pwLog.println(Integer.toHexString(aFrame));
-        pwLog.flush();
-        
-        int label = binaryReverse(aFrame & 0xff, 8);
-        int sign = binaryReverse((aFrame & 0x300) >> 8, 2);
-        int data = binaryReverse((aFrame & 0xffffe000) >> 10, 19);
-        
-        switch(label) {
-            case ADF_FREQUENCY_MSG:
-                return new ArincFrequencyMessage(label, sign, data, ArincFrequencyMessage.FrequencyType.ADF);
-            case ILS_FREQUENCY_MSG:
-                return new ArincFrequencyMessage(label, sign, data, ArincFrequencyMessage.FrequencyType.ILS);
-            case VOR_ILS_FREQUENCY_MSG:
-                return new ArincFrequencyMessage(label, sign, data, ArincFrequencyMessage.FrequencyType.VOR_ILS);
-            case DME_FREQUENCY_MSG:
-                return new ArincFrequencyMessage(label, sign, data, ArincFrequencyMessage.FrequencyType.DME);
-            case SELECTED_COURSE_MSG:            
-                return new ArincSelectedCourseMessage(label, sign, data);
-            case LOCALIZER_DEVIATION_MSG:
-                return new ArincMessageDeviation(label, sign, data, ArincMessageDeviation.DeviationType.Localizer);
-            case GLIDESLOPE_DEVIATION_MSG:
-                return new ArincMessageDeviation(label, sign, data, ArincMessageDeviation.DeviationType.Glideslope);
-            case OMNI_BEARING_MSG:
-                return new ArincOmniBearingMessage(label, sign, data);
-            case EQUIPMENT_DESC_MSG:
-                // Not supported.
-                return null;
-            default:
-                System.out.println("Could not process message: " + Integer.toOctalString(label));
-                break;
-        }
-        return null;
+        return processArincFrame(aFrame, System.nanoTime());
     }
     
+    /**
+     * Processes a full ARINC frame received at a known time.
+     * @param aFrame The raw 32-bit ARINC word, as read from the receiver.
+     * @param aTimestampNanos When it was received, System.nanoTime() based.
+     * @return A constructed ArincMessage object processed from the given frame,
+     *         or null if the label is ignored.
+     */
+    public static ArincMessage processArincFrame(int aFrame, long aTimestampNanos) {
+        return sLabelTable.decode(aFrame, aTimestampNanos);
+    }
+    
+    /**
+     * Fetches the table processArincFrame() dispatches through. Applications may
+     * register additional decoders into it at startup.
+     * @return 
+     */
+    public static ArincLabelTable getLabelTable() {
+        return sLabelTable;
+    }
+    
+    /**
+     * Builds the table of built-in decoders, then lets any ArincLabelPack found
+     * on the class path add to or override it.
+     * @return 
+     */
+    private static ArincLabelTable createDefaultLabelTable() {
+        ArincLabelTable table = new ArincLabelTable();
+        table.register(ADF_FREQUENCY_MSG, (w, t) -> new ArincFrequencyMessage(w, t, ArincFrequencyMessage.FrequencyType.ADF));
+        table.register(ILS_FREQUENCY_MSG, (w, t) -> new ArincFrequencyMessage(w, t, ArincFrequencyMessage.FrequencyType.ILS));
+        table.register(VOR_ILS_FREQUENCY_MSG, (w, t) -> new ArincFrequencyMessage(w, t, ArincFrequencyMessage.FrequencyType.VOR_ILS));
+        table.register(DME_FREQUENCY_MSG, (w, t) -> new ArincFrequencyMessage(w, t, ArincFrequencyMessage.FrequencyType.DME));
+        table.register(SELECTED_COURSE_MSG, ArincSelectedCourseMessage::new);
+        table.register(LOCALIZER_DEVIATION_MSG, (w, t) -> new ArincMessageDeviation(w, t, ArincMessageDeviation.DeviationType.Localizer));
+        table.register(GLIDESLOPE_DEVIATION_MSG, (w, t) -> new ArincMessageDeviation(w, t, ArincMessageDeviation.DeviationType.Glideslope));
+        table.register(OMNI_BEARING_MSG, ArincOmniBearingMessage::new);
+        // Not supported.
+        table.ignore(EQUIPMENT_DESC_MSG);
+        table.loadLabelPacks(ArincMessage.class.getClassLoader());
+        return table;
+    }
+    
+    // The DEI1016 shifts the label in MSB first and every other field LSB first,
+    // so all fields already come out of the chip in numeric order and need no
+    // reversal. Sources which hand over the label in wire order should pass
+    // their words through ArincWord.normalizeLabel() first.
+    
     /**
      * Fetches the ARINC label word, identifying this message.
      * @return 
      */
     public int getLabel() {
-        return mLabel;
+        return ArincWord.label(mWord);
     }
     
     /**
@@ -101,35 +135,78 @@ public class ArincMessage {
      * @return 
      */
     public String getName() {
-        return Integer.toOctalString(mLabel);
+        return Integer.toOctalString(getLabel());
     }
     
     public int getData() {
-        return mData;
+        return ArincWord.data(mWord);
     }
     
+    /**
+     * Fetches the Sign/Status Matrix (bits 30-31).
+     * @return 
+     */
     public int getSignStatus() {
-        return mSign;
+        return ArincWord.ssm(mWord);
+    }
+    
+    /**
+     * Fetches the Source/Destination Identifier (bits 9-10), which tells apart
+     * several sources sending the same label.
+     * @return 
+     */
+    public int getSdi() {
+        return ArincWord.sdi(mWord);
+    }
+    
+    /**
+     * Fetches the raw 32-bit word this message was built from.
+     * @return 
+     */
+    public int getWord() {
+        return mWord;
+    }
+    
+    /**
+     * Fetches when the word was received, System.nanoTime() based, or 0 if the
+     * message was built from its fields.
+     * @return 
+     */
+    public long getTimestampNanos() {
+        return mTimestampNanos;
     }
     
     /**
      * Processes data as a set of "binary coded data" (BCD) -
-     * which returns a quadruplet of 3 and 4-bit numeric values.
+     * which returns the 3 and 4-bit numeric values of the word.
      * Data is segregated as follows, MSB first:
-     * [{3bit}, {4bit}, {4bit}, {4bit}]
+     * [{3bit}, {4bit}, {4bit}, {4bit}, {4bit}]
+     * Allocates the result; see ArincBcd for allocation-free forms.
      * @return 
      */
     protected int[] processBcdData() {
-        return null;
+        int[] digits = new int[ArincBcd.DIGIT_COUNT];
+        ArincBcd.digits(mWord, digits, 0);
+        return digits;
     }
     
     /**
      * Processes data as a binary number with the MSB of the data
      * field serving as a sign.
-     * @return 
+     * @return The signed number of LSBs, per the ArincBnr table for this label.
      */
     protected int processBnrData() {
-        return mData;
+        return ArincBnr.counts(mWord);
+    }
+    
+    /**
+     * Fetches the data scaled to engineering units per the ArincBnr table.
+     * @return The scaled value, or NaN if this label has no BNR definition.
+     */
+    public double getBnrValue() {
+        // Decoding is a shift and a multiply; caching it would need a volatile
+        // now that messages cross threads, and save nothing.
+        return ArincBnr.decode(mWord);
     }
     
     /**
@@ -141,7 +218,7 @@ public class ArincMessage {
      * @return 
      */
     protected static int binaryReverse(int aValue, int aBits) {
-        return aValue;
+        return ArincWord.reverseBits(aValue, aBits);
     }
     
     /**
@@ -153,15 +230,9 @@ public class ArincMessage {
      * @return 
      */
     protected int getNBit(int aBitCount, int aStart) {
-        int shiftData = mData >> aStart;
-        int mask = 0;
-        for(int i = 0; i < aBitCount; i++) {
-            mask = mask | (1 << i);
-        }
-        return (shiftData & mask);
+        return (getData() >>> aStart) & ((1 << aBitCount) - 1);
     }
     
-    private int mLabel;
-    private int mSign;
-    private int mData;
+    private final int mWord;
+    private final long mTimestampNanos;
 }
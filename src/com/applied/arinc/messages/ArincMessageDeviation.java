@@ -10,10 +10,19 @@ public class ArincMessageDeviation extends ArincMessage {
         Glideslope
     }
     
-    protected ArincMessageDeviation(int aLabel, int aSignStatus, int aData, DeviationType aDevType) {
-        super(aLabel, aSignStatus, aData);
+    protected ArincMessageDeviation(int aWord, long aTimestampNanos, DeviationType aDevType) {
+        super(aWord, aTimestampNanos);
         mDevType = aDevType;
     }
     
+    /**
+     * Fetches the deviation as a difference in depth of modulation. Positive
+     * values are fly right for the localizer and fly down for the glideslope.
+     * @return 
+     */
+    public double getDeviationDdm() {
+        return getBnrValue();
+    }
+    
     public DeviationType mDevType;
 }
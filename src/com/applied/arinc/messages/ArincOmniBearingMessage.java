@@ -5,7 +5,14 @@ package com.applied.arinc.messages;
  * @author James
  */
 public class ArincOmniBearingMessage extends ArincMessage{
-    protected ArincOmniBearingMessage(int aLabel, int aSignStatus, int aData) {
-        super(aLabel, aSignStatus, aData);
+    protected ArincOmniBearingMessage(int aWord, long aTimestampNanos) {
+        super(aWord, aTimestampNanos);
+    }
+    
+    /**
+     * @return Omnibearing from the aircraft to the station, -180 to 180 degrees.
+     */
+    public double getBearingDegrees() {
+        return getBnrValue();
     }
 }
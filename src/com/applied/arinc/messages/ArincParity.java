@@ -0,0 +1,61 @@
+package com.applied.arinc.messages;
+
+/**
+ * Odd parity helpers for raw ARINC words. Bit 31 is the parity bit and is set
+ * so that the whole 32-bit word has an odd number of ones.
+ * @author James
+ */
+public final class ArincParity {
+    private static final int PARITY_BIT = 1 << ArincWord.PARITY_SHIFT;
+
+    private ArincParity() {
+    }
+
+    /**
+     * @param aWord
+     * @return True if aWord, parity bit included, has odd parity.
+     */
+    public static boolean isValid(int aWord) {
+        return (Integer.bitCount(aWord) & 1) != 0;
+    }
+
+    /**
+     * Sets or clears the parity bit of aWord so that the word has odd parity.
+     * @param aWord
+     * @return
+     */
+    public static int withParity(int aWord) {
+        int body = aWord & ~PARITY_BIT;
+        return body | ((~Integer.bitCount(body) & 1) << ArincWord.PARITY_SHIFT);
+    }
+
+    /**
+     * Sets the parity bit on every word of aWords in place, ready to transmit.
+     * @param aWords
+     * @param aOffset
+     * @param aLength
+     */
+    public static void applyParity(int[] aWords, int aOffset, int aLength) {
+        int end = aOffset + aLength;
+        for(int i = aOffset; i < end; i++) {
+            int body = aWords[i] & ~PARITY_BIT;
+            aWords[i] = body | ((~Integer.bitCount(body) & 1) << ArincWord.PARITY_SHIFT);
+        }
+    }
+
+    /**
+     * Counts the words in aWords that fail the parity check.
+     * @param aWords
+     * @param aOffset
+     * @param aLength
+     * @return
+     */
+    public static int countFailures(int[] aWords, int aOffset, int aLength) {
+        int failures = 0;
+        int end = aOffset + aLength;
+        for(int i = aOffset; i < end; i++) {
+            failures += ~Integer.bitCount(aWords[i]) & 1;
+        }
+        return failures;
+    }
+}
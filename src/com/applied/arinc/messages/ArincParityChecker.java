@@ -0,0 +1,84 @@
+package com.applied.arinc.messages;
+
+/**
+ * Receive side parity stage. Checks each word before it is decoded, keeps a
+ * running count of failures per label and optionally drops the bad words.
+ * 
+ * Meant to be owned by a single acquisition thread. Counters may be read from
+ * other threads but are not guaranteed to be up to date.
+ * @author James
+ */
+public class ArincParityChecker {
+    
+    /**
+     * @param aDropFailures If true, words failing parity are rejected by
+     *                      accept() and removed by filter().
+     */
+    public ArincParityChecker(boolean aDropFailures) {
+        mDropFailures = aDropFailures;
+    }
+    
+    /**
+     * Checks a single word, counting it if it fails.
+     * @param aWord
+     * @return False if the word failed parity and should be dropped.
+     */
+    public boolean accept(int aWord) {
+        mChecked++;
+        if(ArincParity.isValid(aWord)) {
+            return true;
+        }
+        mFailuresByLabel[aWord & ArincWord.LABEL_MASK]++;
+        mFailures++;
+        return !mDropFailures;
+    }
+    
+    /**
+     * Checks aLength words starting at aOffset. When dropping failures, the
+     * accepted words are compacted towards aOffset in their original order.
+     * @param aWords
+     * @param aOffset
+     * @param aLength
+     * @return The number of words remaining after filtering.
+     */
+    public int filter(int[] aWords, int aOffset, int aLength) {
+        int out = aOffset;
+        int end = aOffset + aLength;
+        for(int i = aOffset; i < end; i++) {
+            int word = aWords[i];
+            if(accept(word)) {
+                aWords[out++] = word;
+            }
+        }
+        return out - aOffset;
+    }
+    
+    public boolean isDroppingFailures() {
+        return mDropFailures;
+    }
+    
+    public long getWordsChecked() {
+        return mChecked;
+    }
+    
+    public long getFailureCount() {
+        return mFailures;
+    }
+    
+    public long getFailureCount(int aLabel) {
+        return mFailuresByLabel[aLabel & ArincWord.LABEL_MASK];
+    }
+    
+    public void resetCounters() {
+        mChecked = 0;
+        mFailures = 0;
+        for(int i = 0; i < mFailuresByLabel.length; i++) {
+            mFailuresByLabel[i] = 0;
+        }
+    }
+    
+    private final boolean mDropFailures;
+    private final long[] mFailuresByLabel = new long[ArincLabelTable.LABEL_COUNT];
+    private long mChecked;
+    private long mFailures;
+}
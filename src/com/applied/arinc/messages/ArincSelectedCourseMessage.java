@@ -5,7 +5,14 @@ package com.applied.arinc.messages;
  * @author James
  */
 public class ArincSelectedCourseMessage extends ArincMessage{
-    protected ArincSelectedCourseMessage(int aLabel, int aSignStatus, int aData) {
-        super(aLabel, aSignStatus, aData);
+    protected ArincSelectedCourseMessage(int aWord, long aTimestampNanos) {
+        super(aWord, aTimestampNanos);
+    }
+    
+    /**
+     * @return Selected course, -180 to 180 degrees.
+     */
+    public double getCourseDegrees() {
+        return getBnrValue();
     }
 }
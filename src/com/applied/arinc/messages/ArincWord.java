@@ -0,0 +1,150 @@
+package com.applied.arinc.messages;
+
+/**
+ * Static, allocation-free codec over a raw 32-bit ARINC word, as presented by
+ * the DEI1016 (word 2 in the upper 16 bits, word 1 in the lower 16 bits).
+ * Bit positions below are 0-based, starting at the LSB:
+ *     Label  - bits 0-7
+ *     SDI    - bits 8-9
+ *     Data   - bits 10-28 (19 bits)
+ *     SSM    - bits 29-30
+ *     Parity - bit 31
+ * Nothing in here allocates, so it is safe to call from the acquisition thread
+ * at full bus rate.
+ * @author James
+ */
+public final class ArincWord {
+    public static final int LABEL_MASK = 0xff;
+    public static final int SDI_SHIFT = 8;
+    public static final int SDI_MASK = 0x3;
+    public static final int DATA_SHIFT = 10;
+    public static final int DATA_BITS = 19;
+    public static final int DATA_MASK = 0x7ffff;
+    public static final int SSM_SHIFT = 29;
+    public static final int SSM_MASK = 0x3;
+    public static final int PARITY_SHIFT = 31;
+
+    private ArincWord() {
+    }
+
+    public static int label(int aWord) {
+        return aWord & LABEL_MASK;
+    }
+
+    public static int sdi(int aWord) {
+        return (aWord >>> SDI_SHIFT) & SDI_MASK;
+    }
+
+    public static int data(int aWord) {
+        return (aWord >>> DATA_SHIFT) & DATA_MASK;
+    }
+
+    public static int ssm(int aWord) {
+        return (aWord >>> SSM_SHIFT) & SSM_MASK;
+    }
+
+    public static int parity(int aWord) {
+        return aWord >>> PARITY_SHIFT;
+    }
+
+    /**
+     * Assembles a raw word from its fields. Each field is masked to its width,
+     * so out of range values are truncated rather than bleeding into their
+     * neighbours.
+     * @param aLabel
+     * @param aSdi
+     * @param aData
+     * @param aSsm
+     * @param aParity
+     * @return
+     */
+    public static int pack(int aLabel, int aSdi, int aData, int aSsm, int aParity) {
+        return (aLabel & LABEL_MASK) |
+               ((aSdi & SDI_MASK) << SDI_SHIFT) |
+               ((aData & DATA_MASK) << DATA_SHIFT) |
+               ((aSsm & SSM_MASK) << SSM_SHIFT) |
+               ((aParity & 1) << PARITY_SHIFT);
+    }
+
+    /**
+     * Mirrors the low aBits of aValue, so bit 0 swaps with bit (aBits - 1) and
+     * so on. Bits above aBits are discarded. Branch-free: four table loads and
+     * a shift.
+     * @param aValue
+     * @param aBits Number of bits to mirror, 1 to 32.
+     * @return
+     */
+    public static int reverseBits(int aValue, int aBits) {
+        int reversed = (REVERSE_TABLE[aValue & 0xff] << 24) |
+                       (REVERSE_TABLE[(aValue >>> 8) & 0xff] << 16) |
+                       (REVERSE_TABLE[(aValue >>> 16) & 0xff] << 8) |
+                       REVERSE_TABLE[aValue >>> 24];
+        return reversed >>> (32 - aBits);
+    }
+
+    /**
+     * Converts an 8-bit label between wire order and octal (MSB first) order.
+     * The DEI1016 already presents labels in octal order - every label in
+     * deiLog.log reads correctly without reversal (0222 is 87% of it) - so this
+     * is only needed for sources that hand over the label as it was shifted in.
+     * @param aLabel
+     * @return
+     */
+    public static int reverseLabel(int aLabel) {
+        return REVERSE_TABLE[aLabel & LABEL_MASK];
+    }
+
+    /**
+     * Reverses an array of 8-bit labels in place.
+     * @param aLabels
+     * @param aOffset
+     * @param aLength
+     */
+    public static void reverseLabels(int[] aLabels, int aOffset, int aLength) {
+        int end = aOffset + aLength;
+        for(int i = aOffset; i < end; i++) {
+            aLabels[i] = REVERSE_TABLE[aLabels[i] & LABEL_MASK];
+        }
+    }
+
+    /**
+     * Replaces the label of a raw word with its wire/octal order counterpart,
+     * leaving every other field untouched.
+     * @param aWord
+     * @return
+     */
+    public static int normalizeLabel(int aWord) {
+        return (aWord & ~LABEL_MASK) | REVERSE_TABLE[aWord & LABEL_MASK];
+    }
+
+    /**
+     * Writes the 8 hex digits of aWord into aDest starting at aOffset, without
+     * leading zero suppression. Used by loggers that want to avoid building a
+     * String per word.
+     * @param aWord
+     * @param aDest
+     * @param aOffset
+     * @return The offset just past the last written character.
+     */
+    public static int toHexChars(int aWord, char[] aDest, int aOffset) {
+        for(int i = 7; i >= 0; i--) {
+            aDest[aOffset + i] = HEX_DIGITS[aWord & 0xf];
+            aWord >>>= 4;
+        }
+        return aOffset + 8;
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // REVERSE_TABLE[b] is b with its 8 bits mirrored.
+    private static final int[] REVERSE_TABLE = new int[256];
+    static {
+        for(int i = 0; i < 256; i++) {
+            int r = 0;
+            for(int bit = 0; bit < 8; bit++) {
+                r |= ((i >>> bit) & 1) << (7 - bit);
+            }
+            REVERSE_TABLE[i] = r;
+        }
+    }
+}
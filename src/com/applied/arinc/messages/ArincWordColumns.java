@@ -0,0 +1,73 @@
+package com.applied.arinc.messages;
+
+/**
+ * Struct-of-arrays output of an ArincBatchDecoder. Every column has the same
+ * capacity and is reused across batches; getSize() says how many rows the last
+ * batch filled.
+ * @author James
+ */
+public class ArincWordColumns {
+    
+    public ArincWordColumns(int aCapacity) {
+        mRaw = new int[aCapacity];
+        mLabel = new int[aCapacity];
+        mSdi = new int[aCapacity];
+        mSsm = new int[aCapacity];
+        mData = new int[aCapacity];
+        mParityOk = new boolean[aCapacity];
+        mValue = new double[aCapacity];
+    }
+    
+    public int getCapacity() {
+        return mRaw.length;
+    }
+    
+    public int getSize() {
+        return mSize;
+    }
+    
+    void setSize(int aSize) {
+        mSize = aSize;
+    }
+    
+    public int[] getRaw() {
+        return mRaw;
+    }
+    
+    public int[] getLabel() {
+        return mLabel;
+    }
+    
+    public int[] getSdi() {
+        return mSdi;
+    }
+    
+    public int[] getSsm() {
+        return mSsm;
+    }
+    
+    public int[] getData() {
+        return mData;
+    }
+    
+    public boolean[] getParityOk() {
+        return mParityOk;
+    }
+    
+    /**
+     * @return Engineering values: BNR labels per ArincBnr, frequency labels in
+     *         MHz (kHz for ADF) per ArincBcd, NaN for everything else.
+     */
+    public double[] getValue() {
+        return mValue;
+    }
+    
+    private final int[] mRaw;
+    private final int[] mLabel;
+    private final int[] mSdi;
+    private final int[] mSsm;
+    private final int[] mData;
+    private final boolean[] mParityOk;
+    private final double[] mValue;
+    private int mSize;
+}
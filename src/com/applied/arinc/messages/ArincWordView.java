@@ -0,0 +1,64 @@
+package com.applied.arinc.messages;
+
+/**
+ * Reusable, mutable view over a single raw ARINC word. A consumer allocates
+ * one of these up front and re-points it at every received word with wrap(),
+ * so reading fields never creates garbage.
+ * @author James
+ */
+public final class ArincWordView {
+
+    /**
+     * Points this view at a new raw word.
+     * @param aWord
+     * @return this, for chaining.
+     */
+    public ArincWordView wrap(int aWord) {
+        mWord = aWord;
+        mTimestampNanos = 0;
+        return this;
+    }
+
+    /**
+     * Points this view at a new raw word received at a known time.
+     * @param aWord
+     * @param aTimestampNanos System.nanoTime() based receive time.
+     * @return this, for chaining.
+     */
+    public ArincWordView wrap(int aWord, long aTimestampNanos) {
+        mWord = aWord;
+        mTimestampNanos = aTimestampNanos;
+        return this;
+    }
+
+    public long getTimestampNanos() {
+        return mTimestampNanos;
+    }
+
+    public int getRaw() {
+        return mWord;
+    }
+
+    public int getLabel() {
+        return ArincWord.label(mWord);
+    }
+
+    public int getSdi() {
+        return ArincWord.sdi(mWord);
+    }
+
+    public int getData() {
+        return ArincWord.data(mWord);
+    }
+
+    public int getSsm() {
+        return ArincWord.ssm(mWord);
+    }
+
+    public int getParity() {
+        return ArincWord.parity(mWord);
+    }
+
+    private int mWord;
+    private long mTimestampNanos;
+}
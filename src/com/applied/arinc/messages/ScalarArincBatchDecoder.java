@@ -0,0 +1,53 @@
+package com.applied.arinc.messages;
+
+/**
+ * Plain Java batch decoder. Each column is filled by its own simple counted
+ * loop so C2 can unroll and auto-vectorise the field extraction; only the
+ * value column, which needs per-label table lookups, is done with gathers.
+ * @author James
+ */
+public class ScalarArincBatchDecoder extends ArincBatchDecoder {
+
+    @Override
+    public void decode(int[] aWords, int aOffset, int aLength, ArincWordColumns aOut) {
+        int[] raw = aOut.getRaw();
+        int[] label = aOut.getLabel();
+        int[] sdi = aOut.getSdi();
+        int[] ssm = aOut.getSsm();
+        int[] data = aOut.getData();
+        boolean[] parityOk = aOut.getParityOk();
+        double[] value = aOut.getValue();
+        
+        if(aWords != raw || aOffset != 0) {
+            System.arraycopy(aWords, aOffset, raw, 0, aLength);
+        }
+        for(int i = 0; i < aLength; i++) {
+            label[i] = raw[i] & ArincWord.LABEL_MASK;
+        }
+        for(int i = 0; i < aLength; i++) {
+            sdi[i] = (raw[i] >>> ArincWord.SDI_SHIFT) & ArincWord.SDI_MASK;
+        }
+        for(int i = 0; i < aLength; i++) {
+            ssm[i] = (raw[i] >>> ArincWord.SSM_SHIFT) & ArincWord.SSM_MASK;
+        }
+        for(int i = 0; i < aLength; i++) {
+            data[i] = (raw[i] >>> ArincWord.DATA_SHIFT) & ArincWord.DATA_MASK;
+        }
+        for(int i = 0; i < aLength; i++) {
+            parityOk[i] = (Integer.bitCount(raw[i]) & 1) != 0;
+        }
+        for(int i = 0; i < aLength; i++) {
+            value[i] = ArincBnr.decode(raw[i]);
+        }
+        // Frequency labels are rare; patch them up in a separate pass so the
+        // loop above stays branch-free.
+        for(int i = 0; i < aLength; i++) {
+            if(ArincBcd.isFrequencyLabel(label[i])) {
+                long hz = ArincBcd.frequencyHz(raw[i]);
+                double scale = label[i] == ArincMessage.ADF_FREQUENCY_MSG ? 1e3 : 1e6;
+                value[i] = hz < 0 ? Double.NaN : hz / scale;
+            }
+        }
+        aOut.setSize(aLength);
+    }
+}
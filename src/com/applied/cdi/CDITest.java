@@ -1,8 +1,15 @@
 package com.applied.cdi;
 
+import com.applied.arinc.Arinc429;
 import com.applied.arinc.Arinc429FileSimulator;
+import com.applied.arinc.ArincWordRing;
 import com.applied.arinc.DEI1016Driver;
+import com.applied.arinc.ReplayPacer;
+import com.applied.arinc.capture.ArincRecorder;
+import com.applied.arinc.capture.SegmentedCaptureSink;
 import com.applied.arinc.messages.ArincMessage;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -20,8 +27,12 @@ public class CDITest {
     static void simLoop() {
         try{
             Arinc429FileSimulator sim = new Arinc429FileSimulator("deiLog.log");
-            while(true) {
-                ArincMessage msg = sim.readMessage();
+            sim.setReplayPacer(ReplayPacer.busRate(ReplayPacer.HIGH_SPEED_BPS, 1.0));
+            // readMessage() returns null for ignored labels as well, so go by
+            // the raw word to tell the end of the file apart.
+            long word;
+            while((word = sim.readRawWord()) != Arinc429.NO_WORD) {
+                ArincMessage.processArincFrame((int)word);
             }
         }catch(Exception e) {
             e.printStackTrace();
@@ -33,14 +44,48 @@ public class CDITest {
             System.out.println("<-- Starting DEI1016 read loop program..");
             DEI1016Driver driver = new DEI1016Driver();
             driver.init();
-            pressAnyKeyToContinue();
+            // 64MB segments, keeping up to 4GB of history.
+            SegmentedCaptureSink store = new SegmentedCaptureSink(Paths.get("flight"), 64L << 20, 4L << 30, 0, true);
+            ArincRecorder recorder = new ArincRecorder(store, 8192, 1000);
+            driver.setRecorder(recorder);
 
-            while(true) {
-                while(!driver.isDataReadyRx1()) {
-                    Thread.sleep(50);
+            // Sleep on DR1 edges rather than polling; the recorder keeps every
+            // word. Decoding happens on its own thread, off the ring, so it
+            // never holds up the next FIFO drain.
+            ArincWordRing ring = new ArincWordRing(4096, ArincWordRing.OverflowPolicy.DROP_OLDEST,
+                                                   ArincWordRing.WaitStrategy.BLOCKING);
+            AtomicLong received = new AtomicLong();
+            Arinc429.Arinc429Listener decoder = (aRawWord, aTimestampNanos, aChannel) -> {
+                ArincMessage.processArincFrame(aRawWord, aTimestampNanos);
+                received.incrementAndGet();
+            };
+            Thread processor = new Thread(() -> {
+                while(!Thread.currentThread().isInterrupted()) {
+                    ring.take(decoder, 256);
                 }
-                driver.readMessage();
+            }, "CDIProcessor");
+            try {
+                pressAnyKeyToContinue();
+                processor.start();
+                driver.addListener(ring);
+                driver.enableInterruptReceive();
+                driver.startAcquisition();
+                pressAnyKeyToContinue();
+            } finally {
+                driver.stopAcquisition();
+                driver.setRecorder(null);
+                processor.interrupt();
+                processor.join();
+                // Flushes what is queued, seals the active segment and writes
+                // the final checkpoint, so a normal exit never leaves work for
+                // crash recovery.
+                recorder.close();
+            }
+            // Acquisition has stopped, so whatever is still queued is all that
+            // is left; decode it too before reporting.
+            while(ring.drain(decoder, 256) > 0) {
             }
+            System.out.println("Received " + received.get() + " words, dropped " + ring.getDroppedCount() + ".");
         }catch(Exception e) {
             e.printStackTrace();
         }
@@ -60,9 +105,7 @@ public class CDITest {
                     Thread.sleep(50);
                 }*/
                 System.out.println("Writing 3 messages to DEI 1016");
-                driver.writeMessage(0x69696868);
-                driver.writeMessage(0x55553333);
-                driver.writeMessage(0x21322122);
+                driver.writeMessages(new int[] { 0x69696868, 0x55553333, 0x21322122 }, 0, 3);
                 pressAnyKeyToContinue();
                 while(driver.isDataReadyRx1()) {
                     System.out.println("Reading message buffer");